@@ -0,0 +1,140 @@
+package com.gtnewhorizons.neid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BlockIdIndex} summaries of the sections of {@link ChunkCorpus}: the time to rebuild them, and to rule sections
+ * out for a diamond query compared to scanning their ids. The false positive rate of the summaries is printed once per
+ * trial, for every single id of {@link #PROBED_IDS} missing from a section and for the diamond query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockIdIndexBenchmark {
+
+    /**
+     * The vanilla ids and the first extended ones, which hold every id of the corpus.
+     */
+    private static final int PROBED_IDS = 4096 + 256;
+
+    /**
+     * Diamond ore, only found in the lowest section of vanilla terrain.
+     */
+    private static final int DIAMOND_ORE = 56;
+
+    private short[][] sections;
+    private long[][] summaries;
+    private long[] diamonds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.sections = ChunkCorpus.generate().sectionIds();
+        this.summaries = new long[this.sections.length][BlockIdIndex.WORDS];
+        this.rebuildSummaries();
+        this.diamonds = query(DIAMOND_ORE);
+
+        long probes = 0;
+        long falsePositives = 0;
+        long withoutDiamonds = 0;
+        long diamondFalsePositives = 0;
+        for (int s = 0; s < this.sections.length; s++) {
+            final boolean[] present = new boolean[Constants.MAX_BLOCK_ID + 1];
+            for (short id : this.sections[s]) {
+                present[id & 0xFFFF] = true;
+            }
+            for (int id = 0; id < PROBED_IDS; id++) {
+                final boolean reported = BlockIdIndex.mayContainAny(this.summaries[s], query(id));
+                if (present[id] && !reported) {
+                    throw new IllegalStateException("Summary of section " + s + " misses id " + id);
+                }
+                if (!present[id]) {
+                    probes++;
+                    if (reported) {
+                        falsePositives++;
+                    }
+                }
+            }
+            if (!present[DIAMOND_ORE]) {
+                withoutDiamonds++;
+                if (BlockIdIndex.mayContainAny(this.summaries[s], this.diamonds)) {
+                    diamondFalsePositives++;
+                }
+            }
+        }
+        System.out.printf(
+                "%n%d sections: %.2f%% false positives over %d absent ids, diamonds in %d of %d sections without any%n",
+                this.sections.length,
+                falsePositives * 100.0 / probes,
+                probes,
+                diamondFalsePositives,
+                withoutDiamonds);
+    }
+
+    private static long[] query(int... ids) {
+        int max = 0;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        final long[] query = new long[(max >>> 6) + 1];
+        for (int id : ids) {
+            query[id >>> 6] |= 1L << id;
+        }
+        return query;
+    }
+
+    @Benchmark
+    public long[][] rebuildSummaries() {
+        for (int s = 0; s < this.sections.length; s++) {
+            BlockIdIndex.rebuild(this.summaries[s], this.sections[s]);
+        }
+        return this.summaries;
+    }
+
+    /**
+     * @return The number of sections that may hold diamonds according to their summary
+     */
+    @Benchmark
+    public int queryDiamondsSummary() {
+        int found = 0;
+        for (long[] summary : this.summaries) {
+            if (BlockIdIndex.mayContainAny(summary, this.diamonds)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of sections holding diamonds, by reading their ids
+     */
+    @Benchmark
+    public int queryDiamondsScan() {
+        final int limit = this.diamonds.length << 6;
+        int found = 0;
+        for (short[] blocks : this.sections) {
+            for (short block : blocks) {
+                final int id = block & 0xFFFF;
+                if (id < limit && (this.diamonds[id >>> 6] & 1L << id) != 0) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
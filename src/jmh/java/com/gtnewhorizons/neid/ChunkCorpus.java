@@ -0,0 +1,163 @@
+package com.gtnewhorizons.neid;
+
+import java.util.Random;
+
+/**
+ * Synthetic full chunk payloads in the legacy NEID layout, shared by the benchmarks: the 16-bit ids of every sent
+ * section, then their 16-bit metadata, block light, sky light and the biomes. The corpus is generated from a fixed seed,
+ * so sizes measured on it can be compared between runs.
+ */
+public final class ChunkCorpus {
+
+    public enum Kind {
+
+        /**
+         * Stone with vanilla ores and a few extended id ores below a dirt and grass surface, open sky above.
+         */
+        OVERWORLD,
+
+        /**
+         * Like {@link #OVERWORLD} with caves carved out and lit by torches.
+         */
+        CAVES,
+
+        /**
+         * Terrain made of extended ids with varied metadata, like the ores and stones of large modpacks.
+         */
+        MODDED
+    }
+
+    public static final int CHUNKS_PER_KIND = 16;
+
+    /**
+     * Sections sent per chunk, the surface is in the last one.
+     */
+    public static final int SECTIONS = 5;
+
+    public final byte[][] chunks;
+
+    public final int[] sections;
+
+    public final long rawBytes;
+
+    private ChunkCorpus(byte[][] chunks, int[] sections) {
+        this.chunks = chunks;
+        this.sections = sections;
+        long raw = 0;
+        for (byte[] chunk : chunks) {
+            raw += chunk.length;
+        }
+        this.rawBytes = raw;
+    }
+
+    public static ChunkCorpus generate(Kind... kinds) {
+        final byte[][] chunks = new byte[kinds.length * CHUNKS_PER_KIND][];
+        final int[] sections = new int[chunks.length];
+        for (int k = 0; k < kinds.length; k++) {
+            final Random random = new Random(kinds[k].ordinal());
+            for (int i = 0; i < CHUNKS_PER_KIND; i++) {
+                chunks[k * CHUNKS_PER_KIND + i] = chunk(kinds[k], random);
+                sections[k * CHUNKS_PER_KIND + i] = SECTIONS;
+            }
+        }
+        return new ChunkCorpus(chunks, sections);
+    }
+
+    public static ChunkCorpus generate() {
+        return generate(Kind.values());
+    }
+
+    /**
+     * @return The 16-bit ids of every section of the corpus, for the benchmarks working on sections
+     */
+    public short[][] sectionIds() {
+        final short[][] ids = new short[this.chunks.length * SECTIONS][Constants.BLOCKS_PER_EBS];
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            for (int section = 0; section < SECTIONS; section++) {
+                ShortArrays.fromBytes(
+                        this.chunks[chunk],
+                        section * Constants.BLOCKS_PER_EBS * 2,
+                        ids[chunk * SECTIONS + section],
+                        0,
+                        Constants.BLOCKS_PER_EBS);
+            }
+        }
+        return ids;
+    }
+
+    private static byte[] chunk(Kind kind, Random random) {
+        final int blocks = SECTIONS * Constants.BLOCKS_PER_EBS;
+        final short[] ids = new short[blocks];
+        final short[] metas = new short[blocks];
+        final byte[] blockLight = new byte[blocks];
+        final byte[] skyLight = new byte[blocks];
+        final int surface = (SECTIONS - 1) * 16 + 4 + random.nextInt(6);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < SECTIONS * 16; y++) {
+                    final int index = (y >> 4) * Constants.BLOCKS_PER_EBS + ((y & 15) << 8 | z << 4 | x);
+                    if (y > surface) {
+                        skyLight[index] = 15;
+                    } else if (y == surface) {
+                        ids[index] = 2;
+                    } else if (y > surface - 4) {
+                        ids[index] = 3;
+                    } else if (y == 0) {
+                        ids[index] = 7;
+                    } else {
+                        underground(kind, random, ids, metas, blockLight, index, y);
+                    }
+                }
+            }
+        }
+        final byte[] data = new byte[SECTIONS * Constants.BYTES_PER_EBS + 256];
+        ShortArrays.toBytes(ids, 0, data, 0, blocks);
+        ShortArrays.toBytes(metas, 0, data, blocks * 2, blocks);
+        packNibbles(blockLight, data, blocks * 4);
+        packNibbles(skyLight, data, blocks * 4 + blocks / 2);
+        for (int i = 0; i < 256; i++) {
+            data[blocks * 5 + i] = (byte) (random.nextInt(4) == 0 ? 4 : 1);
+        }
+        return data;
+    }
+
+    private static void underground(Kind kind, Random random, short[] ids, short[] metas, byte[] blockLight,
+            int index, int y) {
+        if (kind == Kind.CAVES && (y >> 2) % 5 == 2 && random.nextInt(3) != 0) {
+            // Air, some of it lit by torches
+            blockLight[index] = (byte) (random.nextInt(20) == 0 ? 14 : random.nextInt(3) == 0 ? 7 : 0);
+            return;
+        }
+        final int roll = random.nextInt(1000);
+        if (kind == Kind.MODDED) {
+            if (roll < 120) {
+                // Ores of a large modpack, sharing one extended id with their kind as metadata
+                ids[index] = 4096 + 37;
+                metas[index] = (short) (random.nextInt(900) + 1);
+            } else if (roll < 300) {
+                ids[index] = (short) (4096 + random.nextInt(8));
+                metas[index] = (short) random.nextInt(16);
+            } else {
+                ids[index] = 1;
+            }
+        } else if (roll < 8) {
+            ids[index] = 16;
+        } else if (roll < 12) {
+            ids[index] = 15;
+        } else if (roll < 14) {
+            ids[index] = (short) (y < 16 ? 56 : 14);
+        } else if (roll < 20) {
+            ids[index] = (short) (4096 + random.nextInt(4));
+        } else if (roll < 60) {
+            ids[index] = 13;
+        } else {
+            ids[index] = 1;
+        }
+    }
+
+    private static void packNibbles(byte[] values, byte[] out, int offset) {
+        for (int i = 0; i < values.length; i += 2) {
+            out[offset + (i >> 1)] = (byte) (values[i] & 15 | (values[i + 1] & 15) << 4);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.gtnewhorizons.neid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finds the ores UndergroundBiomes replaces in the sections of {@link ChunkCorpus}: with {@link Hooks#findBlocks} over
+ * every section, over the sections their {@link BlockIdIndex} summary doesn't rule out, and block by block through a
+ * per-id replacer array like UndergroundBiomes' replaceChunkOres does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OreScanBenchmark {
+
+    /**
+     * Coal, iron, gold, diamond, redstone and the extended id ores of the corpus.
+     */
+    private static final int[] ORES = { 16, 15, 14, 56, 73, 4096, 4097, 4098, 4099, 4096 + 37 };
+
+    private short[][] sections;
+    private long[] ores;
+    private long[][] summaries;
+    private Object[] replacers;
+    private final int[] positions = new int[Constants.BLOCKS_PER_EBS];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.sections = ChunkCorpus.generate().sectionIds();
+        this.ores = new long[(Constants.MAX_BLOCK_ID >>> 6) + 1];
+        this.replacers = new Object[Constants.MAX_BLOCK_ID + 1];
+        for (int ore : ORES) {
+            this.ores[ore >>> 6] |= 1L << ore;
+            this.replacers[ore] = ore;
+        }
+        this.summaries = new long[this.sections.length][BlockIdIndex.WORDS];
+        for (int s = 0; s < this.sections.length; s++) {
+            BlockIdIndex.rebuild(this.summaries[s], this.sections[s]);
+        }
+    }
+
+    /**
+     * @return The number of ores found
+     */
+    @Benchmark
+    public int scanSections() {
+        int found = 0;
+        for (short[] blocks : this.sections) {
+            found += Hooks.findBlocks(blocks, this.ores, this.positions);
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of ores found
+     */
+    @Benchmark
+    public int scanSummarizedSections() {
+        int found = 0;
+        for (int s = 0; s < this.sections.length; s++) {
+            if (BlockIdIndex.mayContainAny(this.summaries[s], this.ores)) {
+                found += Hooks.findBlocks(this.sections[s], this.ores, this.positions);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of ores found
+     */
+    @Benchmark
+    public int lookupPerBlock() {
+        int found = 0;
+        for (short[] blocks : this.sections) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = 0; y < 16; y++) {
+                        if (this.replacers[blocks[y << 8 | z << 4 | x] & 0xFFFF] != null) {
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+}
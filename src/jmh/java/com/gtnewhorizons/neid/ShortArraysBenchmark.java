@@ -0,0 +1,111 @@
+package com.gtnewhorizons.neid;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversions of one section of 16-bit ids with {@link ShortArrays}, against the ByteBuffer short views and the
+ * coordinate shift loops it replaced, and against the counter indexed loops it uses on Java 8. The mod targets Java 8,
+ * so there is no VarHandle variant to compare with. Run it on both Java 8 and a later Java, the ByteBuffer bulk copies
+ * only beat the loops since Java 9.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortArraysBenchmark {
+
+    private short[] shorts;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(0);
+        this.shorts = new short[Constants.BLOCKS_PER_EBS];
+        for (int i = 0; i < this.shorts.length; i++) {
+            // Mostly ids below 256 like real sections, with some extended ones
+            this.shorts[i] = (short) (random.nextInt(8) == 0 ? random.nextInt(32768) : random.nextInt(256));
+        }
+        this.bytes = ShortArrays.toBytes(this.shorts);
+    }
+
+    @Benchmark
+    public byte[] toBytesShortArrays() {
+        return ShortArrays.toBytes(this.shorts);
+    }
+
+    @Benchmark
+    public byte[] toBytesByteBuffer() {
+        final byte[] out = new byte[this.shorts.length * 2];
+        ByteBuffer.wrap(out).asShortBuffer().put(this.shorts);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] toBytesCounterLoop() {
+        final short[] src = this.shorts;
+        final byte[] out = new byte[src.length * 2];
+        for (int i = 0; i < src.length; i++) {
+            final short value = src[i];
+            out[i << 1] = (byte) (value >> 8);
+            out[(i << 1) + 1] = (byte) value;
+        }
+        return out;
+    }
+
+    @Benchmark
+    public byte[] toBytesShiftLoop() {
+        final byte[] out = new byte[this.shorts.length * 2];
+        int linearIndex = 0;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    final int id = this.shorts[y << 8 | z << 4 | x] & 0xFFFF;
+                    out[linearIndex * 2] = (byte) ((id >> 8) & 0xFF);
+                    out[linearIndex * 2 + 1] = (byte) (id & 0xFF);
+                    linearIndex++;
+                }
+            }
+        }
+        return out;
+    }
+
+    @Benchmark
+    public short[] fromBytesShortArrays() {
+        final short[] out = new short[Constants.BLOCKS_PER_EBS];
+        ShortArrays.fromBytes(this.bytes, 0, out, 0, Constants.BLOCKS_PER_EBS);
+        return out;
+    }
+
+    @Benchmark
+    public short[] fromBytesCounterLoop() {
+        final byte[] src = this.bytes;
+        final short[] out = new short[Constants.BLOCKS_PER_EBS];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (short) (src[i << 1] << 8 | src[(i << 1) + 1] & 0xFF);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public short[] fromBytesByteBuffer() {
+        final short[] out = new short[Constants.BLOCKS_PER_EBS];
+        ShortBuffer.wrap(out).put(ByteBuffer.wrap(this.bytes, 0, Constants.BLOCKS_PER_EBS * 2).asShortBuffer());
+        return out;
+    }
+}
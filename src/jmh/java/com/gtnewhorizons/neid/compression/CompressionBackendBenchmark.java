@@ -0,0 +1,92 @@
+package com.gtnewhorizons.neid.compression;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gtnewhorizons.neid.ChunkCorpus;
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Deflates the legacy payloads of {@link ChunkCorpus} with a {@link CompressionBackend}. Only the JVM's zlib is built
+ * in, other backends are compared by adding their jar to the jmh runtime classpath and passing their name, e.g.
+ * {@code -p backend=java,libdeflate}. The compressed size of the corpus is printed once per trial, since it doesn't
+ * vary between iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBackendBenchmark {
+
+    @Param({ "java" })
+    public String backend;
+
+    /**
+     * The fastest level, the default one of bulk packets and region saves, and the one of single chunk packets.
+     */
+    @Param({ "1", "6", "7" })
+    public int level;
+
+    private ChunkCorpus corpus;
+    private Deflater deflater;
+    private byte[] output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NEIDConfig.NetworkCompressionBackend = this.backend;
+        final CompressionBackend compressionBackend = CompressionBackends.network();
+        if (!compressionBackend.name().equals(this.backend)) {
+            throw new IllegalArgumentException("Unknown compression backend " + this.backend);
+        }
+        this.corpus = ChunkCorpus.generate();
+        this.deflater = compressionBackend.createDeflater(this.level);
+        this.output = new byte[this.corpus.chunks[0].length * 2];
+        final long compressed = this.deflateCorpus();
+        System.out.printf(
+                "%n%s level %d: %d chunks, %d bytes deflated to %d (%.2f%%)%n",
+                this.backend,
+                this.level,
+                this.corpus.chunks.length,
+                this.corpus.rawBytes,
+                compressed,
+                compressed * 100.0 / this.corpus.rawBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.deflater.end();
+    }
+
+    /**
+     * @return The compressed size of the corpus
+     */
+    @Benchmark
+    public long deflateCorpus() {
+        long compressed = 0;
+        for (byte[] chunk : this.corpus.chunks) {
+            this.deflater.reset();
+            this.deflater.setInput(chunk);
+            this.deflater.finish();
+            while (!this.deflater.finished()) {
+                compressed += this.deflater.deflate(this.output);
+            }
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,118 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gtnewhorizons.neid.ChunkCorpus;
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.ShortArrays;
+
+/**
+ * Extracts the chunks of a S26PacketMapChunkBulk through {@link ChunkBulkBuilder#forEachChunk}, serially and in
+ * parallel. The chunks are taken apart from {@link ChunkCorpus} into the 16-bit section arrays, nibble light arrays and
+ * biomes of a real chunk, and extracted like NEID's func_149269_a does: into a borrowed extraction buffer, then copied
+ * out. Parallel extraction only pays off with free cores, run it on the core count of the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkBulkBuildBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    /**
+     * Chunks per bulk packet.
+     */
+    @Param({ "5", "10" })
+    public int chunks;
+
+    private Column[] columns;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NEIDConfig.ParallelChunkBulkBuild = this.parallel;
+        final ChunkCorpus corpus = ChunkCorpus.generate();
+        this.columns = new Column[this.chunks];
+        for (int i = 0; i < this.chunks; i++) {
+            // Spread over every kind of the corpus
+            this.columns[i] = new Column(corpus.chunks[i * corpus.chunks.length / this.chunks]);
+        }
+    }
+
+    @Benchmark
+    public byte[][] buildBulk() {
+        final byte[][] extracted = new byte[this.columns.length][];
+        ChunkBulkBuilder.forEachChunk(extracted.length, i -> extracted[i] = this.columns[i].extract());
+        return extracted;
+    }
+
+    /**
+     * The arrays of a chunk column a full chunk payload is extracted from.
+     */
+    private static final class Column {
+
+        private final short[][] ids = new short[ChunkCorpus.SECTIONS][Constants.BLOCKS_PER_EBS];
+        private final short[][] metas = new short[ChunkCorpus.SECTIONS][Constants.BLOCKS_PER_EBS];
+        private final byte[][] blockLight = new byte[ChunkCorpus.SECTIONS][Constants.BLOCKS_PER_EBS / 2];
+        private final byte[][] skyLight = new byte[ChunkCorpus.SECTIONS][Constants.BLOCKS_PER_EBS / 2];
+        private final byte[] biomes = new byte[256];
+
+        private Column(byte[] payload) {
+            final int blocks = ChunkCorpus.SECTIONS * Constants.BLOCKS_PER_EBS;
+            for (int section = 0; section < ChunkCorpus.SECTIONS; section++) {
+                final int index = section * Constants.BLOCKS_PER_EBS;
+                ShortArrays.fromBytes(payload, index * 2, this.ids[section], 0, Constants.BLOCKS_PER_EBS);
+                ShortArrays.fromBytes(payload, (blocks + index) * 2, this.metas[section], 0, Constants.BLOCKS_PER_EBS);
+                System.arraycopy(payload, blocks * 4 + index / 2, this.blockLight[section], 0, 2048);
+                System.arraycopy(payload, blocks * 4 + blocks / 2 + index / 2, this.skyLight[section], 0, 2048);
+            }
+            System.arraycopy(payload, blocks * 5, this.biomes, 0, 256);
+        }
+
+        private byte[] extract() {
+            final byte[] buffer = ChunkBulkBuilder.extractionBuffer();
+            try {
+                int offset = 0;
+                for (short[] sectionIds : this.ids) {
+                    ShortArrays.toBytes(sectionIds, 0, buffer, offset, Constants.BLOCKS_PER_EBS);
+                    offset += Constants.BLOCKS_PER_EBS * 2;
+                }
+                for (short[] sectionMetas : this.metas) {
+                    ShortArrays.toBytes(sectionMetas, 0, buffer, offset, Constants.BLOCKS_PER_EBS);
+                    offset += Constants.BLOCKS_PER_EBS * 2;
+                }
+                for (byte[] light : this.blockLight) {
+                    System.arraycopy(light, 0, buffer, offset, light.length);
+                    offset += light.length;
+                }
+                for (byte[] light : this.skyLight) {
+                    System.arraycopy(light, 0, buffer, offset, light.length);
+                    offset += light.length;
+                }
+                System.arraycopy(this.biomes, 0, buffer, offset, this.biomes.length);
+                offset += this.biomes.length;
+                return Arrays.copyOf(buffer, offset);
+            } finally {
+                ChunkBulkBuilder.releaseExtractionBuffer();
+            }
+        }
+    }
+}
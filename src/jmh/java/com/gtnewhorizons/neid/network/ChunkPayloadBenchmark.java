@@ -0,0 +1,70 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gtnewhorizons.neid.ChunkCorpus;
+
+/**
+ * Encodes every chunk of {@link ChunkCorpus} as a S21PacketChunkData payload with each {@link ChunkEncoding}: legacy,
+ * {@link ChunkEncoding#BYTE_PLANES}, {@link ChunkEncoding#UNIFORM_LIGHT} and both. The deflated size of the corpus is
+ * printed once per trial, the time per corpus is measured. The corpus can be narrowed to one {@link ChunkCorpus.Kind},
+ * e.g. {@code -p kind=OVERWORLD,CAVES,MODDED}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkPayloadBenchmark {
+
+    @Param({ "0", "1", "8", "9" })
+    public int encoding;
+
+    @Param({ "ALL" })
+    public String kind;
+
+    private ChunkCorpus corpus;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.corpus = "ALL".equals(this.kind) ? ChunkCorpus.generate()
+                : ChunkCorpus.generate(ChunkCorpus.Kind.valueOf(this.kind));
+        final long compressed = this.encodeCorpus();
+        System.out.printf(
+                "%n%s encoding %d: %d chunks, %d bytes encoded to %d (%.2f%%)%n",
+                this.kind,
+                this.encoding,
+                this.corpus.chunks.length,
+                this.corpus.rawBytes,
+                compressed,
+                compressed * 100.0 / this.corpus.rawBytes);
+    }
+
+    /**
+     * @return The compressed size of the corpus
+     */
+    @Benchmark
+    public long encodeCorpus() {
+        long compressed = 0;
+        for (int i = 0; i < this.corpus.chunks.length; i++) {
+            final byte[] raw = this.corpus.chunks[i];
+            compressed += ChunkPayload
+                    .encode(raw, raw.length, this.corpus.sections[i], this.encoding, ChunkPayload.CHUNK_LEVEL).length;
+        }
+        return compressed;
+    }
+}
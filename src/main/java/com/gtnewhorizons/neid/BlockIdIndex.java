@@ -0,0 +1,152 @@
+package com.gtnewhorizons.neid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.ChunkPosition;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Summaries of the block ids of chunk sections, to rule out sections and chunks that can't hold a block without
+ * reading their 4096 ids. The summary of a section is a bloom filter of 256 bits with a single hash per id: ids are
+ * added as blocks are set, and the summary is rebuilt from the ids when the section is loaded or replaced. Ids that are
+ * gone since keep their bit until then, so a summary may report an id that isn't there anymore, but never misses one
+ * that is.
+ *
+ * Queries take a bitset of block ids, the id i being bit i & 63 of ids[i >>> 6], see {@link #ids(Block...)}.
+ */
+public final class BlockIdIndex {
+
+    /**
+     * Length of a summary in longs.
+     */
+    public static final int WORDS = 4;
+
+    private BlockIdIndex() {}
+
+    private static int bit(int id) {
+        return id * 0x9E3779B1 >>> 24;
+    }
+
+    /**
+     * @return The summary of a new section, which only holds air
+     */
+    public static long[] empty() {
+        final long[] summary = new long[WORDS];
+        add(summary, 0);
+        return summary;
+    }
+
+    public static void add(long[] summary, int id) {
+        final int bit = bit(id);
+        summary[bit >>> 6] |= 1L << bit;
+    }
+
+    public static void rebuild(long[] summary, short[] blocks) {
+        summary[0] = summary[1] = summary[2] = summary[3] = 0L;
+        int previous = -1;
+        for (int i = 0; i < Constants.BLOCKS_PER_EBS; i++) {
+            final int id = blocks[i] & 0xFFFF;
+            // Sections are mostly runs of a few ids
+            if (id != previous) {
+                add(summary, id);
+                previous = id;
+            }
+        }
+    }
+
+    /**
+     * @return Whether a section with this summary may hold any of the ids
+     */
+    public static boolean mayContainAny(long[] summary, long[] ids) {
+        for (int word = 0; word < ids.length; word++) {
+            long bits = ids[word];
+            while (bits != 0) {
+                final int bit = bit(word << 6 | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+                if ((summary[bit >>> 6] & 1L << bit) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether any section of the chunk may hold any of the ids
+     */
+    public static boolean mayContainAny(Chunk chunk, long[] ids) {
+        for (ExtendedBlockStorage ebs : chunk.getBlockStorageArray()) {
+            if (Hooks.mayContainAny(ebs, ids)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A bitset of the ids of the blocks, to query the summaries with
+     */
+    public static long[] ids(Block... blocks) {
+        final long[] ids = new long[(Constants.MAX_BLOCK_ID >>> 6) + 1];
+        for (Block block : blocks) {
+            final int id = Block.getIdFromBlock(block);
+            if (id >= 0) {
+                ids[id >>> 6] |= 1L << id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the blocks with any of the ids in the loaded chunks of a world. Only the sections whose summary may hold
+     * one of the ids are read. Must be called on the server thread, which waits for the scan so that the chunks are
+     * not modified while they are read. Sections that don't exist are skipped, even when air is queried.
+     *
+     * @param parallel Whether the chunks are scanned in parallel
+     */
+    public static List<ChunkPosition> find(WorldServer world, long[] ids, boolean parallel) {
+        final Chunk[] chunks = (Chunk[]) world.theChunkProviderServer.loadedChunks.toArray(new Chunk[0]);
+        @SuppressWarnings("unchecked")
+        final List<ChunkPosition>[] found = new List[chunks.length];
+        IntStream range = IntStream.range(0, chunks.length);
+        if (parallel) {
+            range = range.parallel();
+        }
+        range.forEach(i -> found[i] = find(chunks[i], ids));
+        final List<ChunkPosition> positions = new ArrayList<>();
+        for (List<ChunkPosition> chunkPositions : found) {
+            positions.addAll(chunkPositions);
+        }
+        return positions;
+    }
+
+    private static List<ChunkPosition> find(Chunk chunk, long[] ids) {
+        List<ChunkPosition> found = Collections.emptyList();
+        int[] positions = null;
+        for (ExtendedBlockStorage ebs : chunk.getBlockStorageArray()) {
+            if (ebs == null || !Hooks.mayContainAny(ebs, ids)) {
+                continue;
+            }
+            if (positions == null) {
+                positions = new int[Constants.BLOCKS_PER_EBS];
+                found = new ArrayList<>();
+            }
+            final int count = Hooks.findBlocks(ebs, ids, positions);
+            for (int i = 0; i < count; i++) {
+                final int position = positions[i];
+                found.add(
+                        new ChunkPosition(
+                                chunk.xPosition << 4 | position & 15,
+                                ebs.getYLocation() + (position >> 8),
+                                chunk.zPosition << 4 | position >> 4 & 15));
+            }
+        }
+        return found;
+    }
+}
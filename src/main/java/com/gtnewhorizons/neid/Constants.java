@@ -40,6 +40,11 @@ public class Constants {
      */
     public static final int BLOCKS_PER_EBS = 4096;
 
+    /**
+     * Bytes of the nibble array holding the block light or the sky light of every block of an EBS.
+     */
+    public static final int BYTES_PER_LIGHT_PLANE = BLOCKS_PER_EBS / 2;
+
     /**
      * This number is the total bytes in an ExtendedBlockStorage. It is: LSB + MSB + Metadata + Skylight Data +
      * Blocklight Data. In vanilla: 8 + 4 + 4 + 4 + 4 = 24 bits per block = 3 bytes per block * 4,096 blocks per EBS =
@@ -1,5 +1,6 @@
 package com.gtnewhorizons.neid;
 
+import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
@@ -7,8 +8,65 @@ import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
 @SuppressWarnings("unused") // Called by ASM
 public class Hooks {
 
+    private static final NibbleArray EMPTY_MSB_ARRAY = new NibbleArray(Constants.BLOCKS_PER_EBS, 4);
+
     public static int getBlockId(final ExtendedBlockStorage ebs, final int x, final int y, final int z) {
         return ((IExtendedBlockStorageMixin) ebs).getBlock16BArray()[y << 8 | z << 4 | x] & 0xFFFF;
     }
 
+    public static short[] getBlock16BArray(final ExtendedBlockStorage ebs) {
+        return ((IExtendedBlockStorageMixin) ebs).getBlock16BArray();
+    }
+
+    /**
+     * Stands in for the MSB array in methods whose getBlockLSBArray reads were rewritten to the 16-bit ids, which
+     * already hold the high bits. Only ever read, see {@link com.gtnewhorizons.neid.asm.transformer.LsbArrayScans}.
+     */
+    public static NibbleArray getEmptyBlockMSBArray(final ExtendedBlockStorage ebs) {
+        return EMPTY_MSB_ARRAY;
+    }
+
+    /**
+     * Finds the blocks of a section whose id is in a bitset, in a single pass over its 16-bit ids.
+     *
+     * @param ids       Bitset of block ids, the id i being bit i & 63 of ids[i >>> 6]
+     * @param positions Filled with the positions of the matching blocks as y << 8 | z << 4 | x, must hold 4096
+     * @return The number of matching blocks
+     */
+    public static int findBlocks(final ExtendedBlockStorage ebs, final long[] ids, final int[] positions) {
+        if (!mayContainAny(ebs, ids)) {
+            return 0;
+        }
+        return findBlocks(((IExtendedBlockStorageMixin) ebs).getBlock16BArray(), ids, positions);
+    }
+
+    /**
+     * {@link #findBlocks(ExtendedBlockStorage, long[], int[])} over the 16-bit ids of a section, without ruling it out
+     * first.
+     */
+    public static int findBlocks(final short[] blocks, final long[] ids, final int[] positions) {
+        final int limit = ids.length << 6;
+        int count = 0;
+        for (int i = 0; i < Constants.BLOCKS_PER_EBS; i++) {
+            final int id = blocks[i] & 0xFFFF;
+            if (id < limit && (ids[id >>> 6] & 1L << id) != 0) {
+                positions[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param ebs A section, or null for a section that doesn't exist
+     * @return False if the section can't hold any block whose id is in the bitset according to its
+     *         {@link BlockIdIndex} summary, so it doesn't need to be scanned
+     */
+    public static boolean mayContainAny(final ExtendedBlockStorage ebs, final long[] ids) {
+        if (ebs == null || ebs.isEmpty()) {
+            // Missing and empty sections only hold air
+            return ids.length > 0 && (ids[0] & 1L) != 0;
+        }
+        return BlockIdIndex.mayContainAny(((IExtendedBlockStorageMixin) ebs).getBlockIdSummary(), ids);
+    }
+
 }
@@ -1,10 +1,12 @@
 package com.gtnewhorizons.neid;
 
-import com.gtnewhorizon.gtnhlib.config.ConfigException;
-import com.gtnewhorizon.gtnhlib.config.ConfigurationManager;
+import com.gtnewhorizons.neid.network.BlockUpdateStats;
+import com.gtnewhorizons.neid.network.ChunkPayloadCache;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
 
 import cpw.mods.fml.common.Mod;
-import cpw.mods.fml.common.event.FMLPreInitializationEvent;
+import cpw.mods.fml.common.event.FMLInitializationEvent;
+import cpw.mods.fml.common.event.FMLServerStoppedEvent;
 
 @Mod(
         modid = "neid",
@@ -14,12 +16,16 @@ import cpw.mods.fml.common.event.FMLPreInitializationEvent;
 public class NEID {
 
     @Mod.EventHandler
-    public void preInit(FMLPreInitializationEvent event) {
-        try {
-            ConfigurationManager.registerConfig(NEIDConfig.class);
-        } catch (ConfigException e) {
-            throw new RuntimeException("Failed to register NotEnoughIDs config!");
-        }
+    public void init(FMLInitializationEvent event) {
+        NEIDNetwork.init();
+    }
+
+    @Mod.EventHandler
+    public void serverStopped(FMLServerStoppedEvent event) {
+        ChunkPayloadCache.logStats();
+        ChunkPayloadCache.clear();
+        BlockUpdateStats.logStats();
+        BlockUpdateStats.clear();
     }
 
 }
@@ -21,4 +21,86 @@ public class NEIDConfig {
     @Config.Comment("Extend DataWatch IDs. Vanilla limit is 31, new limit is 127.")
     public static boolean ExtendDataWatcher = false;
 
+    @Config.Comment("Send 16-bit block ids and metadata in chunk packets as separate high/low byte planes when the client supports it. Only shrinks chunks made of ids and metadata below 256, like vanilla terrain, by a few percent. Chunks with extended ids or metadata compress worse and take longer to encode.")
+    public static boolean ChunkDataBytePlanes = false;
+
+    @Config.Comment("Send light planes of chunk sections that hold a single value, like the sky light of open air, as that value when the client supports it. Deflate already shrinks such planes to almost nothing, so this saves under 1% of the compressed size of typical chunks and takes longer to encode.")
+    public static boolean ChunkDataUniformLight = false;
+
+    @Config.Comment("Number of background threads compressing chunk packets before they are sent. 0 compresses them on the network thread when they are sent, like vanilla. On Thermos, whose plugins may change chunk packets until they are sent, a copy is compressed ahead and changed packets are compressed again when sent. Single chunk packets are not compressed ahead on Ultramine, which has its own chunk send pool.")
+    @Config.RangeInt(min = 0, max = 32)
+    @Config.RequiresMcRestart
+    public static int ChunkCompressionThreads = 2;
+
+    @Config.Comment("Maximum number of chunk packets waiting for background compression. Packets above the limit are compressed when they are sent.")
+    @Config.RangeInt(min = 1, max = 65536)
+    @Config.RequiresMcRestart
+    public static int ChunkCompressionQueueLimit = 512;
+
+    @Config.Comment("Extract and encode the chunks of multi-chunk packets in parallel. Speeds up sending chunks to players that join or teleport.")
+    public static boolean ParallelChunkBulkBuild = true;
+
+    @Config.Comment("Number of compressed chunk payloads kept to be reused for identical chunks, such as empty, void or superflat chunks. 0 disables the cache.")
+    @Config.RangeInt(min = 0, max = 65536)
+    public static int ChunkPayloadCacheSize = 1024;
+
+    @Config.Comment("Send changed blocks of a chunk as compact per-section runs instead of a multi block change or a whole chunk packet, when the client supports it and it is smaller.")
+    public static boolean SectionDeltaUpdates = true;
+
+    @Config.Comment("When only local players are connected, like in singleplayer, skip compressing chunk packets and hand the client a copy of the block arrays instead of a payload to decode.")
+    public static boolean LocalChunkFastPath = true;
+
+    @Config.Comment("Number of recently received chunk sections clients keep, so that the server doesn't send them again when they didn't change. Each one takes 16 KB on the client and 8 bytes per player on the server. The smaller value of the server and the client is used, 0 disables the cache.")
+    @Config.RangeInt(min = 0, max = 65536)
+    public static int SectionCacheSize = 512;
+
+    @Config.Comment("Send the sections of new chunks nearest to the player's height first, and the rest over the following ticks as smaller partial chunk packets.")
+    public static boolean SectionStreaming = false;
+
+    @Config.Comment("Sections above and below the player's that are sent along with a new chunk when SectionStreaming is enabled.")
+    @Config.RangeInt(min = 0, max = 15)
+    public static int SectionStreamingRadius = 2;
+
+    @Config.Comment("Sections per partial chunk packet sent after a new chunk when SectionStreaming is enabled.")
+    @Config.RangeInt(min = 1, max = 16)
+    public static int SectionStreamingSectionsPerPacket = 2;
+
+    @Config.Comment("Partial chunk packets sent to a player per tick when SectionStreaming is enabled.")
+    @Config.RangeInt(min = 1, max = 1024)
+    public static int SectionStreamingPacketsPerTick = 10;
+
+    @Config.Comment("Only send the sections of chunks around the heights a player recently was at or is heading to, and the others once the player gets close to them. Meant for the Nether and cave-heavy servers, players in the open may see distant terrain far above or below them missing.")
+    public static boolean SectionCulling = false;
+
+    @Config.Comment("Sections above and below the heights a player recently was at that are sent when SectionCulling is enabled.")
+    @Config.RangeInt(min = 0, max = 15)
+    public static int SectionCullingRadius = 3;
+
+    @Config.Comment("Ticks the heights a player passed through keep being sent when SectionCulling is enabled.")
+    @Config.RangeInt(min = 1, max = 72000)
+    public static int SectionCullingMemoryTicks = 600;
+
+    @Config.Comment("Hide blocks, usually ores, that players can't see from chunk packets, by sending them as another block until a block next to them changes.")
+    public static boolean AntiXray = false;
+
+    @Config.Comment("Blocks hidden when AntiXray is enabled, as <dimension>:<blocks>=<replacement>. The dimension is a dimension id or * for every dimension, entries for a dimension take precedence over those for every dimension. Blocks are separated by commas and, like the replacement, are block names or numeric ids.")
+    public static String[] AntiXrayReplacements = {
+            "*:minecraft:coal_ore,minecraft:iron_ore,minecraft:gold_ore,minecraft:diamond_ore,minecraft:emerald_ore,minecraft:lapis_ore,minecraft:redstone_ore,minecraft:lit_redstone_ore=minecraft:stone",
+            "-1:minecraft:quartz_ore=minecraft:netherrack" };
+
+    @Config.Comment("Classes of other mods that read the 8-bit block ids of chunk sections with getBlockLSBArray, like com.example.mod.OreScanner. Their reads are rewritten to read NEID's 16-bit block ids instead. Reads that can't be rewritten safely are left as they are, every class is reported in the log at startup.")
+    @Config.RequiresMcRestart
+    public static String[] LsbArrayRewriteTargets = {};
+
+    @Config.Comment("Compression backend for chunk packets sent to NEID clients. \"java\" is the JVM's zlib, other backends can be added by mods.")
+    @Config.RequiresMcRestart
+    public static String NetworkCompressionBackend = "java";
+
+    @Config.Comment("Compression backend for chunks saved to region files. \"java\" is the JVM's zlib, other backends can be added by mods.")
+    public static String RegionCompressionBackend = "java";
+
+    @Config.Comment("Deflate level of chunks saved to region files, from 1 (fastest) to 9 (smallest). -1 uses the zlib default like vanilla.")
+    @Config.RangeInt(min = -1, max = 9)
+    public static int RegionCompressionLevel = -1;
+
 }
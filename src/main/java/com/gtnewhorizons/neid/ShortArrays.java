@@ -0,0 +1,65 @@
+package com.gtnewhorizons.neid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Conversions between 16-bit block id and metadata arrays and their big-endian byte form, used by chunk packets and
+ * saves. On Java 8 the loops only index with the loop counter and check their bounds up front, so the JIT can drop the
+ * per element range checks and unroll them, unlike the per element calls of a ByteBuffer short view. Since Java 9 the
+ * bulk copies of ByteBuffer short views are a single byte swapping memory copy, which is faster than the loops. See
+ * ShortArraysBenchmark under src/jmh.
+ */
+public final class ShortArrays {
+
+    /**
+     * Whether the bulk copies of ByteBuffer short views swap the bytes with a memory copy, which they do since Java 9.
+     */
+    private static final boolean BULK_BUFFER_COPY = !System.getProperty("java.specification.version").startsWith("1.");
+
+    private ShortArrays() {}
+
+    /**
+     * Writes {@code count} shorts of {@code src} as big-endian bytes into {@code dst} at {@code dstPos}.
+     */
+    public static void toBytes(short[] src, int srcPos, byte[] dst, int dstPos, int count) {
+        checkRange(src.length, srcPos, count);
+        checkRange(dst.length, dstPos, count << 1);
+        if (BULK_BUFFER_COPY) {
+            ByteBuffer.wrap(dst, dstPos, count << 1).asShortBuffer().put(src, srcPos, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            final short value = src[srcPos + i];
+            dst[dstPos + (i << 1)] = (byte) (value >> 8);
+            dst[dstPos + (i << 1) + 1] = (byte) value;
+        }
+    }
+
+    /**
+     * Reads {@code count} big-endian shorts from {@code src} at {@code srcPos} into {@code dst}.
+     */
+    public static void fromBytes(byte[] src, int srcPos, short[] dst, int dstPos, int count) {
+        checkRange(src.length, srcPos, count << 1);
+        checkRange(dst.length, dstPos, count);
+        if (BULK_BUFFER_COPY) {
+            ByteBuffer.wrap(src, srcPos, count << 1).asShortBuffer().get(dst, dstPos, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            dst[dstPos + i] = (short) (src[srcPos + (i << 1)] << 8 | src[srcPos + (i << 1) + 1] & 0xFF);
+        }
+    }
+
+    public static byte[] toBytes(short[] src) {
+        final byte[] out = new byte[src.length << 1];
+        toBytes(src, 0, out, 0, src.length);
+        return out;
+    }
+
+    private static void checkRange(int length, int pos, int count) {
+        if (pos < 0 || count < 0 || pos > length - count) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "Range [" + pos + ", " + pos + " + " + count + ") out of bounds for length " + length);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.gtnewhorizons.neid;
+
+/**
+ * Sections of dimensions without sky, like the Nether, the End and any provider with hasNoSky. Vanilla already creates
+ * their sections without a sky light array and doesn't send one, so NEID treats their sky light as absent as well:
+ * chunk payloads are sized without it, and saves, which vanilla still fills with a zero plane, share a single one.
+ */
+public final class SkylessStorage {
+
+    /**
+     * The zero sky light plane written to the saves of sections without sky. It is shared by every such section, so it
+     * must never be modified.
+     */
+    public static final byte[] EMPTY_SKYLIGHT = new byte[Constants.BYTES_PER_LIGHT_PLANE];
+
+    private SkylessStorage() {}
+
+    /**
+     * @return The size of the payload of a section in chunk packets
+     */
+    public static int bytesPerEbs(boolean hasNoSky) {
+        return hasNoSky ? Constants.BYTES_PER_EBS - Constants.BYTES_PER_LIGHT_PLANE : Constants.BYTES_PER_EBS;
+    }
+}
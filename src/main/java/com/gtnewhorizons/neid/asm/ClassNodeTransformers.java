@@ -7,6 +7,7 @@ import org.objectweb.asm.tree.ClassNode;
 
 import com.gtnewhorizons.neid.asm.transformer.CofhBlockHelper;
 import com.gtnewhorizons.neid.asm.transformer.FmlRegistry;
+import com.gtnewhorizons.neid.asm.transformer.LsbArrayScans;
 import com.gtnewhorizons.neid.asm.transformer.MFQM;
 import com.gtnewhorizons.neid.asm.transformer.UndergroundBiomesBiomeUndergroundDecorator;
 import com.gtnewhorizons.neid.asm.transformer.UndergroundBiomesOreUBifier;
@@ -16,6 +17,7 @@ public enum ClassNodeTransformers {
 
     CofhBlockHelper(new CofhBlockHelper()),
     FmlRegistry(new FmlRegistry()),
+    LsbArrayScans(new LsbArrayScans()),
     MFQM(new MFQM()),
     UndergroundBiomesBiomeUndergroundDecorator(new UndergroundBiomesBiomeUndergroundDecorator()),
     UndergroundBiomesOreUBifier(new UndergroundBiomesOreUBifier()),
@@ -11,9 +11,17 @@ public enum Name {
     extendedBlockStorage("net/minecraft/world/chunk/storage/ExtendedBlockStorage", "apz"),
     iChunkProvider("net/minecraft/world/chunk/IChunkProvider", "apu"),
     world("net/minecraft/world/World", "ahb"),
+    nibbleArray("net/minecraft/world/chunk/NibbleArray", "apv"),
     hooks_getBlockId(Name.hooks, "getBlockId", null, null,
             "(Lnet/minecraft/world/chunk/storage/ExtendedBlockStorage;III)I"),
+    hooks_getBlock16BArray(Name.hooks, "getBlock16BArray", null, null,
+            "(Lnet/minecraft/world/chunk/storage/ExtendedBlockStorage;)[S"),
+    hooks_getEmptyBlockMSBArray(Name.hooks, "getEmptyBlockMSBArray", null, null,
+            "(Lnet/minecraft/world/chunk/storage/ExtendedBlockStorage;)Lnet/minecraft/world/chunk/NibbleArray;"),
     ebs_getBlockLSBArray(Name.extendedBlockStorage, "getBlockLSBArray", "g", "func_76658_g", "()[B"),
+    ebs_getBlockMSBArray(Name.extendedBlockStorage, "getBlockMSBArray", "i", "func_76660_i",
+            "()Lnet/minecraft/world/chunk/NibbleArray;"),
+    nibbleArray_get(Name.nibbleArray, "get", "a", "func_76582_a", "(III)I"),
     ub_bud_replaceChunkOres_world(Name.ub_bud, "replaceChunkOres", null, null, "(IILnet/minecraft/world/World;)V"),
     ub_bud_replaceChunkOres_iChunkProvider(Name.ub_bud, "replaceChunkOres", null, null,
             "(Lnet/minecraft/world/chunk/IChunkProvider;II)V"),
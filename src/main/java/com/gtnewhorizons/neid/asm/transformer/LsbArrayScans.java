@@ -0,0 +1,468 @@
+package com.gtnewhorizons.neid.asm.transformer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.asm.IClassNodeTransformer;
+import com.gtnewhorizons.neid.asm.Name;
+
+/**
+ * Makes the classes listed in {@link NEIDConfig#LsbArrayRewriteTargets} read the 16-bit block ids of chunk sections
+ * where they read the 8-bit ids of getBlockLSBArray. Every array they get from it is read from
+ * {@link com.gtnewhorizons.neid.Hooks#getBlock16BArray} instead, with SALOAD in place of BALOAD and a 0xFFFF mask in
+ * place of a 0xFF one. The high bits of the ids are already part of the 16-bit ones, so the arrays of getBlockMSBArray
+ * in the same methods are replaced with {@link com.gtnewhorizons.neid.Hooks#getEmptyBlockMSBArray}, which only holds
+ * zeros.
+ *
+ * A method is only rewritten when every array of both methods in it is only ever read: read right away, or stored in a
+ * local variable that holds nothing else and is only read from. MSB arrays may only be tested for null or read with
+ * get. Methods with any other use are left as they are and logged.
+ */
+public class LsbArrayScans implements IClassNodeTransformer {
+
+    private static final Logger logger = LogManager.getLogger("NEID");
+
+    @Override
+    public String[] getTargetClass() {
+        return NEIDConfig.LsbArrayRewriteTargets;
+    }
+
+    @Override
+    public void transform(final ClassNode cn, final boolean obfuscated) {
+        boolean found = false;
+        for (final MethodNode method : cn.methods) {
+            found |= this.transformMethod(cn, method, obfuscated);
+        }
+        if (!found) {
+            logger.warn("{} is listed in LsbArrayRewriteTargets but never calls getBlockLSBArray", cn.name);
+        }
+    }
+
+    /**
+     * @return Whether the method calls getBlockLSBArray
+     */
+    private boolean transformMethod(final ClassNode cn, final MethodNode method, final boolean obfuscated) {
+        final InsnList code = method.instructions;
+        final Set<LabelNode> targets = jumpTargets(method);
+        final Sites lsb = Sites.find(method, targets, false, obfuscated);
+        if (lsb.count == 0) {
+            return false;
+        }
+        final Sites msb = Sites.find(method, targets, true, obfuscated);
+        final List<AbstractInsnNode> reads = new ArrayList<>();
+        final String reason = lsb.check(method, targets, reads, obfuscated);
+        final String msbReason = msb.check(method, targets, new ArrayList<>(), obfuscated);
+        if (reason != null || msbReason != null) {
+            logger.warn(
+                    "Not rewriting getBlockLSBArray in {}.{}{}: {}",
+                    cn.name,
+                    method.name,
+                    method.desc,
+                    reason != null ? reason : "getBlockMSBArray: " + msbReason);
+            return true;
+        }
+        for (final MethodInsnNode call : lsb.calls()) {
+            code.set(call, Name.hooks_getBlock16BArray.staticInvocation(obfuscated));
+        }
+        for (final AbstractInsnNode read : reads) {
+            final AbstractInsnNode mask = read.getNext();
+            if (isIntConstant(mask, 0xFF) && mask.getNext() != null && mask.getNext().getOpcode() == IAND) {
+                code.set(mask, new LdcInsnNode(0xFFFF));
+            }
+            code.set(read, new InsnNode(SALOAD));
+        }
+        for (final int variable : lsb.stored.keySet()) {
+            retypeVariable(method, variable);
+        }
+        for (final MethodInsnNode call : msb.calls()) {
+            code.set(call, Name.hooks_getEmptyBlockMSBArray.staticInvocation(obfuscated));
+        }
+        logger.info(
+                "Rewrote {} getBlockLSBArray and {} getBlockMSBArray calls in {}.{}{} to read 16-bit block ids",
+                lsb.count,
+                msb.count,
+                cn.name,
+                method.name,
+                method.desc);
+        return true;
+    }
+
+    /**
+     * The calls of a method to getBlockLSBArray or getBlockMSBArray.
+     */
+    private static final class Sites {
+
+        private final boolean nibbles;
+
+        /**
+         * The calls whose array is stored in a local variable, by variable.
+         */
+        private final Map<Integer, List<MethodInsnNode>> stored = new LinkedHashMap<>();
+
+        /**
+         * The calls whose array is used right away.
+         */
+        private final List<MethodInsnNode> direct = new ArrayList<>();
+
+        private int count;
+
+        private Sites(final boolean nibbles) {
+            this.nibbles = nibbles;
+        }
+
+        /**
+         * @param nibbles Whether to find the getBlockMSBArray calls instead of the getBlockLSBArray ones
+         */
+        static Sites find(final MethodNode method, final Set<LabelNode> targets, final boolean nibbles,
+                final boolean obfuscated) {
+            final Sites sites = new Sites(nibbles);
+            for (final AbstractInsnNode insn : method.instructions.toArray()) {
+                if (nibbles ? isMsbArrayCall(insn, obfuscated) : isLsbArrayCall(insn, obfuscated)) {
+                    final AbstractInsnNode next = next(insn, targets);
+                    if (next != null && next.getOpcode() == ASTORE) {
+                        sites.stored.computeIfAbsent(((VarInsnNode) next).var, var -> new ArrayList<>())
+                                .add((MethodInsnNode) insn);
+                    } else {
+                        sites.direct.add((MethodInsnNode) insn);
+                    }
+                    sites.count++;
+                }
+            }
+            return sites;
+        }
+
+        /**
+         * @param reads Filled with the BALOAD instructions reading the arrays
+         * @return Why one of the calls can't be rewritten, or null if they all can
+         */
+        String check(final MethodNode method, final Set<LabelNode> targets, final List<AbstractInsnNode> reads,
+                final boolean obfuscated) {
+            for (final MethodInsnNode call : this.direct) {
+                final String reason = checkReads(call, targets, reads, this.nibbles, obfuscated);
+                if (reason != null) {
+                    return reason;
+                }
+            }
+            for (final int var : this.stored.keySet()) {
+                final String reason = checkVariable(method, var, targets, reads, this.nibbles, obfuscated);
+                if (reason != null) {
+                    return reason;
+                }
+            }
+            return null;
+        }
+
+        List<MethodInsnNode> calls() {
+            final List<MethodInsnNode> calls = new ArrayList<>(this.direct);
+            for (final List<MethodInsnNode> variableCalls : this.stored.values()) {
+                calls.addAll(variableCalls);
+            }
+            return calls;
+        }
+    }
+
+    /**
+     * Checks that a local variable only ever holds arrays of getBlockLSBArray, or those of getBlockMSBArray, or null,
+     * and that it is only read from.
+     *
+     * @param reads Filled with the BALOAD instructions reading the variable
+     * @return Why the variable can't be rewritten, or null if it can
+     */
+    private static String checkVariable(final MethodNode method, final int var, final Set<LabelNode> targets,
+            final List<AbstractInsnNode> reads, final boolean nibbles, final boolean obfuscated) {
+        if (var < argumentSlots(method)) {
+            return "the array is stored in a parameter";
+        }
+        for (final AbstractInsnNode insn : method.instructions.toArray()) {
+            if (!(insn instanceof VarInsnNode) || ((VarInsnNode) insn).var != var) {
+                continue;
+            }
+            if (insn.getOpcode() == ASTORE) {
+                final AbstractInsnNode previous = previous(insn, targets);
+                if (previous == null || previous.getOpcode() != ACONST_NULL
+                        && !(nibbles ? isMsbArrayCall(previous, obfuscated) : isLsbArrayCall(previous, obfuscated))) {
+                    return "the local variable holding the array holds other values as well";
+                }
+            } else if (insn.getOpcode() == ALOAD) {
+                final String reason = checkReads(insn, targets, reads, nibbles, obfuscated);
+                if (reason != null) {
+                    return reason;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follows an array of getBlockLSBArray, or a nibble array of getBlockMSBArray, from the instruction pushing it
+     * until it is consumed. Only the instructions javac emits for an index expression may run in between.
+     *
+     * @param reads Filled with the BALOAD instruction reading the array, if any
+     * @return Why the array can't be rewritten, or null if it can
+     */
+    private static String checkReads(final AbstractInsnNode start, final Set<LabelNode> targets,
+            final List<AbstractInsnNode> reads, final boolean nibbles, final boolean obfuscated) {
+        // Values on the stack from the array up
+        int depth = 1;
+        for (AbstractInsnNode insn = next(start, targets); insn != null; insn = next(insn, targets)) {
+            final int opcode = insn.getOpcode();
+            if (depth == 1 && (opcode == IFNULL || opcode == IFNONNULL || !nibbles && opcode == ARRAYLENGTH)) {
+                return null;
+            }
+            if (nibbles && depth == 4
+                    && opcode == INVOKEVIRTUAL
+                    && Name.nibbleArray_get.matches((MethodInsnNode) insn, obfuscated)) {
+                return null;
+            }
+            if (!nibbles && depth == 2 && opcode == BALOAD) {
+                reads.add(insn);
+                return null;
+            }
+            if (opcode == BASTORE) {
+                return "the array is written to";
+            }
+            final int effect = stackEffect(insn);
+            if (effect < 0) {
+                return "unsupported instruction with opcode " + opcode + " while the array is on the stack";
+            }
+            final int popped = effect >> 4;
+            if (depth - popped < 1) {
+                return "the array is passed on by the instruction with opcode " + opcode;
+            }
+            depth += (effect & 0xF) - popped;
+        }
+        return "the array is still on the stack at the end of the method";
+    }
+
+    /**
+     * @return The stack values popped by an instruction times 16 plus the values it pushes, -1 if it isn't expected
+     *         in an index expression
+     */
+    private static int stackEffect(final AbstractInsnNode insn) {
+        final int opcode = insn.getOpcode();
+        switch (insn.getType()) {
+            case AbstractInsnNode.INSN:
+                switch (opcode) {
+                    case ACONST_NULL:
+                    case ICONST_M1:
+                    case ICONST_0:
+                    case ICONST_1:
+                    case ICONST_2:
+                    case ICONST_3:
+                    case ICONST_4:
+                    case ICONST_5:
+                        return 1;
+                    case INEG:
+                    case I2B:
+                    case I2C:
+                    case I2S:
+                        return 1 << 4 | 1;
+                    case IADD:
+                    case ISUB:
+                    case IMUL:
+                    case IDIV:
+                    case IREM:
+                    case ISHL:
+                    case ISHR:
+                    case IUSHR:
+                    case IAND:
+                    case IOR:
+                    case IXOR:
+                    case IALOAD:
+                    case BALOAD:
+                    case CALOAD:
+                    case SALOAD:
+                    case AALOAD:
+                        return 2 << 4 | 1;
+                    case DUP:
+                        return 1 << 4 | 2;
+                    default:
+                        return -1;
+                }
+            case AbstractInsnNode.INT_INSN:
+                return opcode == BIPUSH || opcode == SIPUSH ? 1 : -1;
+            case AbstractInsnNode.LDC_INSN: {
+                final Object cst = ((LdcInsnNode) insn).cst;
+                return cst instanceof Long || cst instanceof Double ? 2 : 1;
+            }
+            case AbstractInsnNode.VAR_INSN:
+                switch (opcode) {
+                    case ILOAD:
+                    case FLOAD:
+                    case ALOAD:
+                        return 1;
+                    case LLOAD:
+                    case DLOAD:
+                        return 2;
+                    default:
+                        return -1;
+                }
+            case AbstractInsnNode.IINC_INSN:
+                return 0;
+            case AbstractInsnNode.FIELD_INSN: {
+                final int size = Type.getType(((FieldInsnNode) insn).desc).getSize();
+                return opcode == GETSTATIC ? size : opcode == GETFIELD ? 1 << 4 | size : -1;
+            }
+            case AbstractInsnNode.METHOD_INSN: {
+                final int sizes = Type.getArgumentsAndReturnSizes(((MethodInsnNode) insn).desc);
+                // The argument size counts a receiver, static methods don't have one
+                final int arguments = (sizes >> 2) - (opcode == INVOKESTATIC ? 1 : 0);
+                return arguments << 4 | sizes & 0x3;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Changes the type of a local variable from byte[] to short[], in the debug info and in the stack map frames.
+     */
+    private static void retypeVariable(final MethodNode method, final int var) {
+        if (method.localVariables != null) {
+            for (final LocalVariableNode local : method.localVariables) {
+                if (local.index == var && "[B".equals(local.desc)) {
+                    local.desc = "[S";
+                }
+            }
+        }
+        // The locals of the previous frame, long and double values take two slots but a single entry
+        final List<Object> locals = new ArrayList<>();
+        if ((method.access & ACC_STATIC) == 0) {
+            locals.add(TOP);
+        }
+        for (final Type argument : Type.getArgumentTypes(method.desc)) {
+            locals.add(argument.getSize() == 2 ? LONG : TOP);
+        }
+        for (final AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn.getType() != AbstractInsnNode.FRAME) {
+                continue;
+            }
+            final FrameNode frame = (FrameNode) insn;
+            switch (frame.type) {
+                case F_NEW:
+                case F_FULL:
+                    locals.clear();
+                    retypeFrameLocals(frame.local, locals, var);
+                    break;
+                case F_APPEND:
+                    retypeFrameLocals(frame.local, locals, var);
+                    break;
+                case F_CHOP:
+                    for (int i = 0; i < frame.local.size(); i++) {
+                        locals.remove(locals.size() - 1);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Appends the locals of a frame to the previous ones, changing byte[] to short[] in the slot of the variable.
+     */
+    private static void retypeFrameLocals(final List<Object> frameLocals, final List<Object> locals, final int var) {
+        int slot = 0;
+        for (final Object local : locals) {
+            slot += local == LONG || local == DOUBLE ? 2 : 1;
+        }
+        for (int i = 0; i < frameLocals.size(); i++) {
+            final Object local = frameLocals.get(i);
+            if (slot == var && "[B".equals(local)) {
+                frameLocals.set(i, "[S");
+            }
+            locals.add(local);
+            slot += local == LONG || local == DOUBLE ? 2 : 1;
+        }
+    }
+
+    private static int argumentSlots(final MethodNode method) {
+        return (Type.getArgumentsAndReturnSizes(method.desc) >> 2) - ((method.access & ACC_STATIC) != 0 ? 1 : 0);
+    }
+
+    /**
+     * @return The labels where control flow merges
+     */
+    private static Set<LabelNode> jumpTargets(final MethodNode method) {
+        final Set<LabelNode> targets = new HashSet<>();
+        for (final AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn instanceof JumpInsnNode) {
+                targets.add(((JumpInsnNode) insn).label);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                targets.add(((LookupSwitchInsnNode) insn).dflt);
+                targets.addAll(((LookupSwitchInsnNode) insn).labels);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                targets.add(((TableSwitchInsnNode) insn).dflt);
+                targets.addAll(((TableSwitchInsnNode) insn).labels);
+            }
+        }
+        if (method.tryCatchBlocks != null) {
+            for (final TryCatchBlockNode tryCatch : method.tryCatchBlocks) {
+                targets.add(tryCatch.handler);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return The next instruction that runs right after this one, skipping line numbers and labels nothing jumps to
+     */
+    private static AbstractInsnNode next(AbstractInsnNode insn, final Set<LabelNode> targets) {
+        do {
+            insn = insn.getNext();
+        } while (insn != null && (insn.getType() == AbstractInsnNode.LINE
+                || insn.getType() == AbstractInsnNode.LABEL && !targets.contains(insn)));
+        return insn;
+    }
+
+    private static AbstractInsnNode previous(AbstractInsnNode insn, final Set<LabelNode> targets) {
+        do {
+            insn = insn.getPrevious();
+        } while (insn != null && (insn.getType() == AbstractInsnNode.LINE
+                || insn.getType() == AbstractInsnNode.LABEL && !targets.contains(insn)));
+        return insn;
+    }
+
+    private static boolean isLsbArrayCall(final AbstractInsnNode insn, final boolean obfuscated) {
+        return insn.getOpcode() == INVOKEVIRTUAL
+                && Name.ebs_getBlockLSBArray.matches((MethodInsnNode) insn, obfuscated);
+    }
+
+    private static boolean isMsbArrayCall(final AbstractInsnNode insn, final boolean obfuscated) {
+        return insn.getOpcode() == INVOKEVIRTUAL
+                && Name.ebs_getBlockMSBArray.matches((MethodInsnNode) insn, obfuscated);
+    }
+
+    private static boolean isIntConstant(final AbstractInsnNode insn, final int value) {
+        if (insn instanceof IntInsnNode) {
+            return insn.getOpcode() != NEWARRAY && ((IntInsnNode) insn).operand == value;
+        }
+        return insn instanceof LdcInsnNode && Integer.valueOf(value).equals(((LdcInsnNode) insn).cst);
+    }
+}
@@ -0,0 +1,92 @@
+package com.gtnewhorizons.neid.client;
+
+import java.nio.ByteBuffer;
+
+import net.minecraft.block.Block;
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.gtnewhorizons.neid.Constants;
+
+/**
+ * Applies batches of block changes received from the server. Blocks that neither have a tile entity nor change the
+ * lighting are written straight into the section, resetting the precipitation height of their column the way vanilla
+ * does, and every touched section gets a single render update at the end. Other blocks go through WorldClient.func_147492_c like vanilla, which updates lighting, the height map and tile
+ * entities.
+ */
+public final class ClientBlockUpdates {
+
+    private ClientBlockUpdates() {}
+
+    /**
+     * Applies the records of a S22PacketMultiBlockChange: a x << 12 | z << 8 | y short followed by the 16-bit block id
+     * and the 16-bit metadata.
+     */
+    public static void applyMultiBlockChange(WorldClient world, int chunkX, int chunkZ, byte[] data, int records) {
+        if (world == null || !world.getChunkProvider().chunkExists(chunkX, chunkZ)) {
+            return;
+        }
+        final int[] locations = new int[records];
+        final Block[] blocks = new Block[records];
+        final int[] metas = new int[records];
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        for (int i = 0; i < records; i++) {
+            locations[i] = in.getShort() & 0xFFFF;
+            blocks[i] = Block.getBlockById(in.getShort() & Constants.BLOCK_ID_MASK);
+            metas[i] = in.getShort() & Constants.METADATA_MASK;
+        }
+        final Chunk chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+        final ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        int sectionMask = 0;
+        for (int i = 0; i < records; i++) {
+            final int location = locations[i];
+            final int y = location & 255;
+            apply(world, chunk, storage, location >> 12 & 15, y, location >> 8 & 15, blocks[i], metas[i]);
+            sectionMask |= 1 << (y >> 4);
+        }
+        markSections(world, chunk, sectionMask);
+    }
+
+    /**
+     * Applies one block change, in chunk-local coordinates. The section must be marked for a render update afterwards.
+     */
+    public static void apply(WorldClient world, Chunk chunk, ExtendedBlockStorage[] storage, int x, int y, int z,
+            Block block, int meta) {
+        final ExtendedBlockStorage ebs = storage[y >> 4];
+        final int sectionY = y & 15;
+        final Block old = ebs == null ? null : ebs.getBlockByExtId(x, sectionY, z);
+        if (old != null && old != block
+                && !old.hasTileEntity(ebs.getExtBlockMetadata(x, sectionY, z))
+                && !block.hasTileEntity(meta)
+                && old.getLightOpacity() == block.getLightOpacity()
+                && old.getLightValue() == block.getLightValue()) {
+            ebs.func_150818_a(x, sectionY, z, block);
+            ebs.setExtBlockMetadata(x, sectionY, z, meta);
+            // Chunk.func_150807_a invalidates the rain height of the column when a block at or above it changes
+            final int column = z << 4 | x;
+            if (y >= chunk.precipitationHeightMap[column] - 1) {
+                chunk.precipitationHeightMap[column] = -999;
+            }
+            chunk.isModified = true;
+        } else if (old == null || old != block || ebs.getExtBlockMetadata(x, sectionY, z) != meta) {
+            world.func_147492_c(chunk.xPosition << 4 | x, y, chunk.zPosition << 4 | z, block, meta);
+        }
+    }
+
+    public static void markSections(WorldClient world, Chunk chunk, int sectionMask) {
+        final int baseX = chunk.xPosition << 4;
+        final int baseZ = chunk.zPosition << 4;
+        for (int sectionY = 0; sectionY < 16; sectionY++) {
+            if ((sectionMask & (1 << sectionY)) != 0) {
+                world.markBlockRangeForRenderUpdate(
+                        baseX,
+                        sectionY << 4,
+                        baseZ,
+                        baseX + 15,
+                        sectionY << 4 | 15,
+                        baseZ + 15);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gtnewhorizons.neid.client;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.network.SectionCache;
+
+/**
+ * The client side of {@link SectionCache}: the id and metadata arrays of recently received sections, by hash.
+ * Sections the server replaced by a marker are restored from it, every other section of a flagged payload is added.
+ */
+public final class ClientSectionCache {
+
+    private static final int ARRAY_BYTES = Constants.BLOCKS_PER_EBS * 2;
+
+    private static Map<Long, byte[]> cache;
+
+    private ClientSectionCache() {}
+
+    /**
+     * Starts an empty cache for a new connection, a capacity of 0 disables it.
+     */
+    public static synchronized void reset(int capacity) {
+        cache = capacity <= 0 ? null : new LinkedHashMap<Long, byte[]>(16, 0.75F, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Restores the sections replaced by markers in a legacy payload flagged with
+     * {@link com.gtnewhorizons.neid.network.ChunkEncoding#SECTION_CACHE}, and caches the others.
+     */
+    public static synchronized void resolve(byte[] data, int sectionMask) throws IOException {
+        if (cache == null) {
+            throw new IOException("Received a section cache payload without a section cache");
+        }
+        final int sections = Integer.bitCount(sectionMask & 0xFFFF);
+        for (int i = 0; i < sections; i++) {
+            final int idOffset = i * ARRAY_BYTES;
+            final int metaOffset = (sections + i) * ARRAY_BYTES;
+            if (SectionCache.isMarker(data, idOffset)) {
+                final byte[] section = cache.get(SectionCache.markerHash(data, idOffset));
+                if (section == null) {
+                    throw new IOException("Section cache out of sync with the server");
+                }
+                System.arraycopy(section, 0, data, idOffset, ARRAY_BYTES);
+                System.arraycopy(section, ARRAY_BYTES, data, metaOffset, ARRAY_BYTES);
+            } else {
+                final byte[] section = new byte[ARRAY_BYTES * 2];
+                System.arraycopy(data, idOffset, section, 0, ARRAY_BYTES);
+                System.arraycopy(data, metaOffset, section, ARRAY_BYTES, ARRAY_BYTES);
+                cache.put(SectionCache.hash(data, idOffset, metaOffset), section);
+            }
+        }
+    }
+}
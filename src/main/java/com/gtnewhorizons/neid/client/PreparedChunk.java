@@ -0,0 +1,110 @@
+package com.gtnewhorizons.neid.client;
+
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.ShortArrays;
+import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
+
+/**
+ * The 16-bit block id and metadata arrays of a received chunk, decoded by readPacketData on the network thread, or
+ * copied from the server chunk for local connections. The main thread then only swaps them into the sections in
+ * Chunk.fillChunk instead of decoding the payload itself.
+ */
+public final class PreparedChunk {
+
+    /**
+     * The chunk being filled by {@link #fillChunk}, only accessed from the client thread.
+     */
+    private static PreparedChunk filling;
+
+    private final short[][] ids = new short[16][];
+    private final short[][] metas = new short[16][];
+
+    private PreparedChunk() {}
+
+    /**
+     * @param data        Payload in the legacy NEID layout
+     * @param sectionMask Sections present in the payload
+     */
+    public static PreparedChunk prepare(byte[] data, int sectionMask) {
+        final PreparedChunk prepared = new PreparedChunk();
+        final int sections = Integer.bitCount(sectionMask & 0xFFFF);
+        final int metaOffset = sections * Constants.BLOCKS_PER_EBS * 2;
+        int section = 0;
+        for (int sectionY = 0; sectionY < 16; sectionY++) {
+            if ((sectionMask & (1 << sectionY)) == 0) {
+                continue;
+            }
+            final int offset = section * Constants.BLOCKS_PER_EBS * 2;
+            prepared.ids[sectionY] = decode(data, offset);
+            prepared.metas[sectionY] = decode(data, metaOffset + offset);
+            section++;
+        }
+        return prepared;
+    }
+
+    /**
+     * Copies the arrays of a server chunk for a packet handed to a local connection, which never goes through
+     * readPacketData.
+     *
+     * @param sectionMask Sections sent by the packet
+     */
+    public static PreparedChunk snapshot(Chunk chunk, int sectionMask) {
+        final PreparedChunk prepared = new PreparedChunk();
+        final ExtendedBlockStorage[] storageArrays = chunk.getBlockStorageArray();
+        for (int sectionY = 0; sectionY < 16; sectionY++) {
+            if ((sectionMask & (1 << sectionY)) == 0 || storageArrays[sectionY] == null) {
+                continue;
+            }
+            final IExtendedBlockStorageMixin ebs = (IExtendedBlockStorageMixin) storageArrays[sectionY];
+            prepared.ids[sectionY] = ebs.getBlock16BArray().clone();
+            prepared.metas[sectionY] = ebs.getBlock16BMetaArray().clone();
+        }
+        return prepared;
+    }
+
+    private static short[] decode(byte[] data, int offset) {
+        final short[] out = new short[Constants.BLOCKS_PER_EBS];
+        ShortArrays.fromBytes(data, offset, out, 0, Constants.BLOCKS_PER_EBS);
+        return out;
+    }
+
+    /**
+     * Calls Chunk.fillChunk, letting it take the prepared arrays through {@link #takeIds} and {@link #takeMetas}.
+     */
+    public static void fillChunk(Chunk chunk, byte[] data, int sectionMask, int msbMask, boolean fullChunk,
+            PreparedChunk prepared) {
+        filling = prepared;
+        try {
+            chunk.fillChunk(data, sectionMask, msbMask, fullChunk);
+        } finally {
+            filling = null;
+        }
+    }
+
+    /**
+     * @return The prepared block ids of a section of the chunk being filled, or null if it has to be decoded from the
+     *         payload
+     */
+    public static short[] takeIds(int sectionY) {
+        final PreparedChunk prepared = filling;
+        if (prepared == null) {
+            return null;
+        }
+        final short[] ids = prepared.ids[sectionY];
+        prepared.ids[sectionY] = null;
+        return ids;
+    }
+
+    public static short[] takeMetas(int sectionY) {
+        final PreparedChunk prepared = filling;
+        if (prepared == null) {
+            return null;
+        }
+        final short[] metas = prepared.metas[sectionY];
+        prepared.metas[sectionY] = null;
+        return metas;
+    }
+}
@@ -0,0 +1,27 @@
+package com.gtnewhorizons.neid.compression;
+
+import java.util.zip.Deflater;
+
+/**
+ * Provides the deflaters used for chunk packets and region saves. Backends are found through
+ * {@link java.util.ServiceLoader}, or registered with {@link CompressionBackends#register}, and picked per use site by
+ * name in the config.
+ *
+ * A backend may override the methods of {@link Deflater} to compress natively, but it must keep producing zlib streams
+ * that a plain {@link java.util.zip.Inflater} can read, since neither vanilla clients nor older region readers know
+ * anything else.
+ */
+public interface CompressionBackend {
+
+    /**
+     * @return The name used to select this backend in the config
+     */
+    String name();
+
+    /**
+     * @param level Deflate compression level, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return A new deflater, ended by the caller when it is no longer used
+     */
+    Deflater createDeflater(int level);
+
+}
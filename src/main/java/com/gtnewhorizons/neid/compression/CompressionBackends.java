@@ -0,0 +1,93 @@
+package com.gtnewhorizons.neid.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Registry of the available {@link CompressionBackend}s and the ones selected for each use site.
+ */
+public final class CompressionBackends {
+
+    private static final Logger LOGGER = LogManager.getLogger("NEID");
+
+    private static final Map<String, CompressionBackend> BACKENDS = new ConcurrentHashMap<>();
+
+    private static volatile boolean discovered;
+
+    static {
+        register(new JavaCompressionBackend());
+    }
+
+    private CompressionBackends() {}
+
+    public static void register(CompressionBackend backend) {
+        BACKENDS.put(backend.name(), backend);
+    }
+
+    /**
+     * @return The backend compressing chunk packets sent to clients that accepted a NEID encoding
+     */
+    public static CompressionBackend network() {
+        return get(NEIDConfig.NetworkCompressionBackend);
+    }
+
+    /**
+     * @return The backend compressing chunks saved to region files
+     */
+    public static CompressionBackend region() {
+        return get(NEIDConfig.RegionCompressionBackend);
+    }
+
+    /**
+     * Replaces the DeflaterOutputStream RegionFile wraps around the buffer of a chunk being saved.
+     */
+    public static DeflaterOutputStream regionOutputStream(OutputStream out) {
+        final Deflater deflater = region().createDeflater(NEIDConfig.RegionCompressionLevel);
+        return new DeflaterOutputStream(out, deflater) {
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private static CompressionBackend get(String name) {
+        if (!discovered) {
+            discover();
+        }
+        final CompressionBackend backend = BACKENDS.get(name);
+        if (backend == null) {
+            LOGGER.warn("Unknown compression backend {}, using {}", name, JavaCompressionBackend.NAME);
+            BACKENDS.put(name, BACKENDS.get(JavaCompressionBackend.NAME));
+            return BACKENDS.get(name);
+        }
+        return backend;
+    }
+
+    private static synchronized void discover() {
+        if (discovered) {
+            return;
+        }
+        for (CompressionBackend backend : ServiceLoader
+                .load(CompressionBackend.class, CompressionBackends.class.getClassLoader())) {
+            LOGGER.info("Found compression backend {}", backend.name());
+            register(backend);
+        }
+        discovered = true;
+    }
+}
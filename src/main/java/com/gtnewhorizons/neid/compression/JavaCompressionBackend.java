@@ -0,0 +1,21 @@
+package com.gtnewhorizons.neid.compression;
+
+import java.util.zip.Deflater;
+
+/**
+ * The zlib bundled with the JVM, as used by vanilla.
+ */
+public final class JavaCompressionBackend implements CompressionBackend {
+
+    public static final String NAME = "java";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Deflater createDeflater(int level) {
+        return new Deflater(level);
+    }
+}
@@ -4,7 +4,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.gtnewhorizon.gtnhlib.config.ConfigException;
+import com.gtnewhorizon.gtnhlib.config.ConfigurationManager;
 import com.gtnewhorizon.gtnhmixins.IEarlyMixinLoader;
+import com.gtnewhorizons.neid.NEIDConfig;
 import com.gtnewhorizons.neid.asm.NEIDTransformer;
 import com.gtnewhorizons.neid.mixins.Mixins;
 
@@ -17,6 +20,17 @@ public class NEIDCore implements IFMLLoadingPlugin, IEarlyMixinLoader {
 
     private static boolean isObfuscated;
 
+    /**
+     * The config is registered here rather than in preInit, since the transformers read it to pick their targets.
+     */
+    public NEIDCore() {
+        try {
+            ConfigurationManager.registerConfig(NEIDConfig.class);
+        } catch (ConfigException e) {
+            throw new RuntimeException("Failed to register NotEnoughIDs config!");
+        }
+    }
+
     @Override
     public String getMixinConfig() {
         return "mixins.neid.early.json";
@@ -25,13 +25,24 @@ public enum Mixins {
             "minecraft.MixinS23PacketBlockChange",
             "minecraft.MixinS24PacketBlockAction",
             "minecraft.MixinS26PacketMapChunkBulk",
+            "minecraft.MixinMessageSerializer",
             "minecraft.MixinItemInWorldManager",
-            "minecraft.MixinBlock"
+            "minecraft.MixinBlock",
+            "minecraft.MixinPlayerManager"
         ).setApplyIf(() -> true)),
     VANILLA_STARTUP_CHUNK_SAVE(new Builder("Start Vanilla Chunk Save").addTargetedMod(TargetedMod.VANILLA)
         .setSide(Side.BOTH).setPhase(Phase.EARLY).addMixinClasses(
-            "minecraft.MixinAnvilChunkLoader"
+            "minecraft.MixinAnvilChunkLoader",
+            "minecraft.MixinRegionFile"
         ).setApplyIf(() -> !Common.ultramineTainted)),
+    VANILLA_STARTUP_SECTION_DELTA(new Builder("Start Vanilla Section Delta").addTargetedMod(TargetedMod.VANILLA)
+        .setSide(Side.BOTH).setPhase(Phase.EARLY).addMixinClasses(
+            "minecraft.MixinPlayerInstance"
+        ).setApplyIf(() -> !Common.ultramineTainted)),
+    VANILLA_STARTUP_SECTION_STREAMING(new Builder("Start Vanilla Section Streaming").addTargetedMod(TargetedMod.VANILLA)
+        .setSide(Side.BOTH).setPhase(Phase.EARLY).addMixinClasses(
+            "minecraft.MixinEntityPlayerMP"
+        ).setApplyIf(() -> !Common.thermosTainted && !Common.ultramineTainted)),
     VANILLA_STARTUP_ONLY_WITHOUT_THERMOS(new Builder("Start Vanilla No Thermos").addTargetedMod(TargetedMod.VANILLA).setSide(Side.BOTH).setPhase(Phase.EARLY).addMixinClasses(
         "minecraft.MixinS21PacketChunkData"
     ).setApplyIf(() -> !Common.thermosTainted && !Common.ultramineTainted)),
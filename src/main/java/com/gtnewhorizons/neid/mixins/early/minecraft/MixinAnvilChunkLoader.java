@@ -11,6 +11,7 @@ import org.spongepowered.asm.mixin.injection.Redirect;
 
 import com.gtnewhorizons.neid.Constants;
 import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.SkylessStorage;
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
@@ -96,6 +97,21 @@ public class MixinAnvilChunkLoader {
         }
     }
 
+    /**
+     * Sections without sky light are saved with a zero plane, like vanilla, but one shared by every section instead of
+     * a new one per section.
+     */
+    @Redirect(
+            method = "writeChunkToNBT",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/nbt/NBTTagCompound;setByteArray(Ljava/lang/String;[B)V",
+                    ordinal = 5),
+            require = 1)
+    private void neid$shareEmptySkylight(NBTTagCompound nbt, String key, byte[] emptySkylight) {
+        nbt.setByteArray(key, SkylessStorage.EMPTY_SKYLIGHT);
+    }
+
     @Redirect(
             method = "readChunkFromNBT",
             at = @At(
@@ -12,6 +12,9 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import com.gtnewhorizons.neid.ShortArrays;
+import com.gtnewhorizons.neid.SkylessStorage;
+
 /**
  * Ultramine-specific compatibility mixin for EbsSaveFakeNbt. This mixin intercepts ultramine's optimized chunk saving
  * to ensure MemSlot data is synced to NEID arrays before writing, allowing vanilla NEID redirects to work.
@@ -120,28 +123,9 @@ public class MixinEbsSaveFakeNbt {
              * msbData.length, vanillaMetaData.length, nonZeroBlocks);
              */
 
-            // Also write NEID 16-bit format (uses linear order for ByteBuffer compatibility)
-            byte[] blocks16 = new byte[4096 * 2];
-            byte[] data16 = new byte[4096 * 2];
-
-            int linearIndex = 0;
-            for (int y = 0; y < 16; y++) {
-                for (int z = 0; z < 16; z++) {
-                    for (int x = 0; x < 16; x++) {
-                        int coordIndex = y << 8 | z << 4 | x;
-                        int blockId = block16BArray[coordIndex] & 0xFFFF;
-                        int meta = block16BMetaArray[coordIndex] & 0xFFFF;
-
-                        // Write as 16-bit (BIG-ENDIAN) for ByteBuffer.wrap().asShortBuffer()
-                        // ByteBuffer.wrap() uses BIG_ENDIAN by default, so we write MSB first
-                        blocks16[linearIndex * 2] = (byte) ((blockId >> 8) & 0xFF);
-                        blocks16[linearIndex * 2 + 1] = (byte) (blockId & 0xFF);
-                        data16[linearIndex * 2] = (byte) ((meta >> 8) & 0xFF);
-                        data16[linearIndex * 2 + 1] = (byte) (meta & 0xFF);
-                        linearIndex++;
-                    }
-                }
-            }
+            // Also write NEID 16-bit format (big-endian, in y << 8 | z << 4 | x order like the arrays)
+            byte[] blocks16 = ShortArrays.toBytes(block16BArray);
+            byte[] data16 = ShortArrays.toBytes(block16BMetaArray);
 
             ((net.minecraft.nbt.NBTTagCompound) (Object) this).setByteArray("Blocks16", blocks16);
             ((net.minecraft.nbt.NBTTagCompound) (Object) this).setByteArray("Data16", data16);
@@ -163,7 +147,8 @@ public class MixinEbsSaveFakeNbt {
             ((net.minecraft.nbt.NBTTagCompound) (Object) this).setByteArray("BlockLight", blockLight);
 
             if (hasNoSky) {
-                ((net.minecraft.nbt.NBTTagCompound) (Object) this).setByteArray("SkyLight", new byte[2048]);
+                ((net.minecraft.nbt.NBTTagCompound) (Object) this)
+                        .setByteArray("SkyLight", SkylessStorage.EMPTY_SKYLIGHT);
             } else {
                 java.lang.reflect.Method copySkylightMethod = slotClass.getMethod("copySkylight");
                 byte[] skyLight = (byte[]) copySkylightMethod.invoke(slot);
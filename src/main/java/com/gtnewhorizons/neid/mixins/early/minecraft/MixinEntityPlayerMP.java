@@ -0,0 +1,62 @@
+package com.gtnewhorizons.neid.mixins.early.minecraft;
+
+import java.util.List;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.chunk.Chunk;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.network.ChunkBulkBuilder;
+import com.gtnewhorizons.neid.network.SectionStreamer;
+import com.llamalad7.mixinextras.injector.WrapWithCondition;
+
+@Mixin(EntityPlayerMP.class)
+public class MixinEntityPlayerMP {
+
+    @Unique
+    private final SectionStreamer neid$streamer = new SectionStreamer();
+
+    @Redirect(
+            method = "onUpdate",
+            at = @At(value = "NEW", target = "net/minecraft/network/play/server/S26PacketMapChunkBulk"),
+            require = 1)
+    private S26PacketMapChunkBulk neid$sendNearestSectionsFirst(List<Chunk> chunks) {
+        if (!NEIDConfig.SectionStreaming && !NEIDConfig.SectionCulling) {
+            return new S26PacketMapChunkBulk(chunks);
+        }
+        final EntityPlayerMP player = (EntityPlayerMP) (Object) this;
+        final int sectionMask = this.neid$streamer.initialMask(player);
+        final S26PacketMapChunkBulk packet = ChunkBulkBuilder
+                .withSectionMask(sectionMask, () -> new S26PacketMapChunkBulk(chunks));
+        this.neid$streamer.defer(player.getServerForPlayer(), chunks, sectionMask);
+        return packet;
+    }
+
+    /**
+     * Tile entities of sections that are not sent yet would be dropped by the client, they follow their section.
+     */
+    @WrapWithCondition(
+            method = "onUpdate",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/entity/player/EntityPlayerMP;func_147097_b(Lnet/minecraft/tileentity/TileEntity;)V"),
+            require = 1)
+    private boolean neid$skipDeferredTileEntity(EntityPlayerMP player, TileEntity tileEntity) {
+        return tileEntity == null || !this.neid$streamer
+                .isDeferred(tileEntity.xCoord >> 4, tileEntity.yCoord >> 4, tileEntity.zCoord >> 4);
+    }
+
+    @Inject(method = "onUpdate", at = @At("RETURN"), require = 1)
+    private void neid$sendDeferredSections(CallbackInfo ci) {
+        this.neid$streamer.sendPending((EntityPlayerMP) (Object) this);
+    }
+}
@@ -1,8 +1,5 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft;
 
-import java.nio.ByteBuffer;
-import java.nio.ShortBuffer;
-
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
@@ -11,8 +8,10 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
 
+import com.gtnewhorizons.neid.BlockIdIndex;
 import com.gtnewhorizons.neid.Constants;
 import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.ShortArrays;
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
 
 @Mixin(ExtendedBlockStorage.class)
@@ -28,6 +27,8 @@ public class MixinExtendedBlockStorage implements IExtendedBlockStorageMixin {
 
     private short[] block16BMetaArray = new short[Constants.BLOCKS_PER_EBS];
 
+    private final long[] blockIdSummary = BlockIdIndex.empty();
+
     @Override
     public short[] getBlock16BArray() {
         return this.block16BArray;
@@ -38,30 +39,44 @@ public class MixinExtendedBlockStorage implements IExtendedBlockStorageMixin {
         return this.block16BMetaArray;
     }
 
+    @Override
+    public void setBlock16BArray(short[] ids) {
+        this.block16BArray = ids;
+    }
+
+    @Override
+    public void setBlock16BMetaArray(short[] metas) {
+        this.block16BMetaArray = metas;
+    }
+
     @Override
     public byte[] getBlockData() {
-        final byte[] ret = new byte[this.block16BArray.length * 2];
-        ByteBuffer.wrap(ret).asShortBuffer().put(this.block16BArray);
-        return ret;
+        return ShortArrays.toBytes(this.block16BArray);
     }
 
     @Override
     public byte[] getBlockMeta() {
-        final byte[] ret = new byte[this.block16BMetaArray.length * 2];
-        ByteBuffer.wrap(ret).asShortBuffer().put(this.block16BMetaArray);
-        return ret;
+        return ShortArrays.toBytes(this.block16BMetaArray);
     }
 
     @Override
     public void setBlockData(byte[] data, int offset) {
-        ShortBuffer.wrap(this.block16BArray)
-                .put(ByteBuffer.wrap(data, offset, Constants.BLOCKS_PER_EBS * 2).asShortBuffer());
+        ShortArrays.fromBytes(data, offset, this.block16BArray, 0, Constants.BLOCKS_PER_EBS);
     }
 
     @Override
     public void setBlockMeta(byte[] data, int offset) {
-        ShortBuffer.wrap(this.block16BMetaArray)
-                .put(ByteBuffer.wrap(data, offset, Constants.BLOCKS_PER_EBS * 2).asShortBuffer());
+        ShortArrays.fromBytes(data, offset, this.block16BMetaArray, 0, Constants.BLOCKS_PER_EBS);
+    }
+
+    @Override
+    public long[] getBlockIdSummary() {
+        return this.blockIdSummary;
+    }
+
+    @Override
+    public void rebuildBlockIdSummary() {
+        BlockIdIndex.rebuild(this.blockIdSummary, this.block16BArray);
     }
 
     private int getBlockId(int x, int y, int z) {
@@ -70,6 +85,7 @@ public class MixinExtendedBlockStorage implements IExtendedBlockStorageMixin {
 
     private void setBlockId(int x, int y, int z, int id) {
         block16BArray[y << 8 | z << 4 | x] = (short) id;
+        BlockIdIndex.add(this.blockIdSummary, id);
     }
 
     /**
@@ -165,6 +181,8 @@ public class MixinExtendedBlockStorage implements IExtendedBlockStorageMixin {
                 }
             }
         }
+        // Called once the ids of a loaded or received section are set, which doesn't go through setBlockId
+        this.rebuildBlockIdSummary();
     }
 
 }
@@ -78,6 +78,7 @@ public abstract class MixinExtendedBlockStorageUltramine {
                         // Copy NEID arrays directly to preserve 16-bit metadata
                         System.arraycopy(origBlockArray, 0, copyBlockArray, 0, 4096);
                         System.arraycopy(origMetaArray, 0, copyMetaArray, 0, 4096);
+                        copyMixin.rebuildBlockIdSummary();
 
                         // DEBUG: Uncomment for debugging
                         // LOGGER.debug("[COPY] Copied NEID arrays (16-bit metadata preserved)");
@@ -0,0 +1,37 @@
+package com.gtnewhorizons.neid.mixins.early.minecraft;
+
+import net.minecraft.network.Packet;
+import net.minecraft.util.MessageSerializer;
+
+import org.spongepowered.asm.mixin.Mixin;
+
+import com.gtnewhorizons.neid.network.NEIDNetwork;
+import com.llamalad7.mixinextras.injector.wrapmethod.WrapMethod;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Exposes the connection a packet is being serialized for, so chunk packets can pick the encoding that connection
+ * accepted in {@code writePacketData}.
+ */
+@Mixin(MessageSerializer.class)
+public class MixinMessageSerializer {
+
+    /**
+     * The connection is cleared even when a packet fails to serialize, so that it doesn't leak into the next packet
+     * written on this thread.
+     */
+    @WrapMethod(
+            method = "encode(Lio/netty/channel/ChannelHandlerContext;Lnet/minecraft/network/Packet;Lio/netty/buffer/ByteBuf;)V",
+            require = 1)
+    private void neid$trackWrite(ChannelHandlerContext ctx, Packet packet, ByteBuf out, Operation<Void> original) {
+        NEIDNetwork.beginWrite(ctx.channel());
+        try {
+            original.call(ctx, packet, out);
+        } finally {
+            NEIDNetwork.endWrite();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.gtnewhorizons.neid.mixins.early.minecraft;
+
+import java.util.List;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.network.play.server.S22PacketMultiBlockChange;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.chunk.Chunk;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Coerce;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import com.gtnewhorizons.neid.network.BlockUpdateStats;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
+import com.gtnewhorizons.neid.network.SectionDelta;
+import com.gtnewhorizons.neid.network.message.MessageSectionDelta;
+
+/**
+ * Coalesces the blocks changed in a chunk during a tick. Vanilla only remembers the first 64 changed positions and
+ * switches to a S21PacketChunkData past that, so every flagged position is tracked here as well. That allows sending a
+ * larger S22PacketMultiBlockChange when it is smaller than the chunk packet, and a {@link MessageSectionDelta} to the
+ * players that support it whenever that is smaller still.
+ */
+@Mixin(targets = "net.minecraft.server.management.PlayerManager$PlayerInstance")
+public abstract class MixinPlayerInstance {
+
+    @Shadow
+    @Final
+    private List<EntityPlayerMP> playersWatchingChunk;
+
+    @Shadow
+    @Final
+    private ChunkCoordIntPair chunkLocation;
+
+    @Unique
+    private final long[][] neid$dirty = new long[16][];
+
+    /**
+     * The delta built for the pending update, null when every watching player gets the vanilla packet.
+     */
+    @Unique
+    private MessageSectionDelta neid$delta;
+
+    @Unique
+    private int neid$deltaReplacedSize;
+
+    /**
+     * A S22PacketMultiBlockChange with every changed block, sent instead of the chunk packet vanilla built.
+     */
+    @Unique
+    private S22PacketMultiBlockChange neid$multiBlockChange;
+
+    @Shadow
+    public abstract void sendToAllPlayersWatchingChunk(Packet packet);
+
+    /**
+     * Replaces the linear search vanilla does over the already flagged positions.
+     */
+    @Inject(method = "flagChunkForUpdate", at = @At("HEAD"), cancellable = true, require = 1)
+    private void neid$trackChangedBlock(int x, int y, int z, CallbackInfo ci) {
+        if (!SectionDelta.mark(this.neid$dirty, x, y, z)) {
+            BlockUpdateStats.DUPLICATE_CHANGES.incrementAndGet();
+            ci.cancel();
+        }
+    }
+
+    @Redirect(
+            method = "sendChunkUpdate",
+            at = @At(
+                    value = "NEW",
+                    target = "(Lnet/minecraft/world/chunk/Chunk;ZI)Lnet/minecraft/network/play/server/S21PacketChunkData;"),
+            require = 1)
+    private S21PacketChunkData neid$deltaInsteadOfChunk(Chunk chunk, boolean fullChunk, int sectionMask) {
+        final int chunkPacketSize = SectionDelta.estimateChunkPacketSize(sectionMask);
+        final int records = SectionDelta.count(this.neid$dirty);
+        final int multiBlockChangeSize = SectionDelta.multiBlockChangePacketSize(records);
+        final boolean sendMultiBlockChange = multiBlockChangeSize < chunkPacketSize;
+        if (this.neid$prepareDelta(chunk, sendMultiBlockChange ? multiBlockChangeSize : chunkPacketSize)) {
+            return null;
+        }
+        if (sendMultiBlockChange) {
+            this.neid$multiBlockChange = new S22PacketMultiBlockChange(
+                    records,
+                    SectionDelta.locations(this.neid$dirty, records),
+                    chunk);
+            BlockUpdateStats.replaced(chunkPacketSize, multiBlockChangeSize);
+            return null;
+        }
+        return new S21PacketChunkData(chunk, fullChunk, sectionMask);
+    }
+
+    @Redirect(
+            method = "sendChunkUpdate",
+            at = @At(
+                    value = "NEW",
+                    target = "(I[SLnet/minecraft/world/chunk/Chunk;)Lnet/minecraft/network/play/server/S22PacketMultiBlockChange;"),
+            require = 1)
+    private S22PacketMultiBlockChange neid$deltaInsteadOfMultiBlockChange(int records, short[] locations,
+            Chunk chunk) {
+        if (this.neid$prepareDelta(chunk, SectionDelta.multiBlockChangePacketSize(records))) {
+            return null;
+        }
+        return new S22PacketMultiBlockChange(records, locations, chunk);
+    }
+
+    @Redirect(
+            method = "sendChunkUpdate",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/server/management/PlayerManager$PlayerInstance;sendToAllPlayersWatchingChunk(Lnet/minecraft/network/Packet;)V"),
+            require = 1)
+    private void neid$sendDeltaToWatchers(@Coerce Object playerInstance, Packet packet) {
+        if (packet == null) {
+            packet = this.neid$multiBlockChange;
+            this.neid$multiBlockChange = null;
+        }
+        final MessageSectionDelta delta = this.neid$delta;
+        if (delta == null) {
+            this.sendToAllPlayersWatchingChunk(packet);
+            return;
+        }
+        this.neid$delta = null;
+        final int deltaSize = SectionDelta.messageSize(delta);
+        for (EntityPlayerMP player : this.playersWatchingChunk) {
+            if (player.loadedChunks.contains(this.chunkLocation)) {
+                continue;
+            }
+            if ((NEIDNetwork.getEncoding(player) & ChunkEncoding.SECTION_DELTA) != 0) {
+                NEIDNetwork.CHANNEL.sendTo(delta, player);
+                BlockUpdateStats.replaced(this.neid$deltaReplacedSize, deltaSize);
+            } else if (packet != null) {
+                player.playerNetServerHandler.sendPacket(packet);
+            }
+        }
+    }
+
+    @Inject(method = "sendChunkUpdate", at = @At("RETURN"), require = 1)
+    private void neid$clearChangedBlocks(CallbackInfo ci) {
+        this.neid$delta = null;
+        this.neid$multiBlockChange = null;
+        SectionDelta.clear(this.neid$dirty);
+    }
+
+    /**
+     * Builds the delta if a watching player supports it and it is smaller than the vanilla packet.
+     *
+     * @return True if no watching player needs the vanilla packet
+     */
+    @Unique
+    private boolean neid$prepareDelta(Chunk chunk, int vanillaPacketSize) {
+        if ((ChunkEncoding.enabled() & ChunkEncoding.SECTION_DELTA) == 0) {
+            return false;
+        }
+        boolean anyDelta = false;
+        boolean allDelta = true;
+        for (EntityPlayerMP player : this.playersWatchingChunk) {
+            if (player.loadedChunks.contains(this.chunkLocation)) {
+                continue;
+            }
+            if ((NEIDNetwork.getEncoding(player) & ChunkEncoding.SECTION_DELTA) != 0) {
+                anyDelta = true;
+            } else {
+                allDelta = false;
+            }
+        }
+        if (!anyDelta) {
+            return false;
+        }
+        final MessageSectionDelta delta = SectionDelta.build(chunk, this.neid$dirty);
+        if (SectionDelta.messageSize(delta) >= vanillaPacketSize) {
+            return false;
+        }
+        this.neid$delta = delta;
+        this.neid$deltaReplacedSize = vanillaPacketSize;
+        return allDelta;
+    }
+}
@@ -0,0 +1,45 @@
+package com.gtnewhorizons.neid.mixins.early.minecraft;
+
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.world.WorldServer;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import com.gtnewhorizons.neid.network.AntiXray;
+
+@Mixin(PlayerManager.class)
+public abstract class MixinPlayerManager {
+
+    /**
+     * Set while the neighbours of a changed block are sent, so that they don't reveal their own neighbours.
+     */
+    @Unique
+    private boolean neid$revealing;
+
+    @Shadow
+    public abstract WorldServer getWorldServer();
+
+    @Shadow
+    public abstract void markBlockForUpdate(int x, int y, int z);
+
+    /**
+     * Ores hidden by {@link AntiXray} next to a changed block may have just become visible, so they are sent along.
+     */
+    @Inject(method = "markBlockForUpdate", at = @At("RETURN"), require = 1)
+    private void neid$revealHiddenNeighbours(int x, int y, int z, CallbackInfo ci) {
+        if (this.neid$revealing) {
+            return;
+        }
+        this.neid$revealing = true;
+        try {
+            AntiXray.revealAround(this.getWorldServer(), x, y, z, this::markBlockForUpdate);
+        } finally {
+            this.neid$revealing = false;
+        }
+    }
+}
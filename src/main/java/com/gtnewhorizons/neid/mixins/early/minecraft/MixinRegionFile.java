@@ -0,0 +1,24 @@
+package com.gtnewhorizons.neid.mixins.early.minecraft;
+
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import net.minecraft.world.chunk.storage.RegionFile;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import com.gtnewhorizons.neid.compression.CompressionBackends;
+
+@Mixin(RegionFile.class)
+public class MixinRegionFile {
+
+    @Redirect(
+            method = "getChunkDataOutputStream",
+            at = @At(value = "NEW", target = "java/util/zip/DeflaterOutputStream"),
+            require = 1)
+    private DeflaterOutputStream neid$regionCompressionBackend(OutputStream out) {
+        return CompressionBackends.regionOutputStream(out);
+    }
+}
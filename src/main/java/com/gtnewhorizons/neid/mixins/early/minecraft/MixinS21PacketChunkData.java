@@ -1,27 +1,75 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft;
 
+import java.io.IOException;
+
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
+import org.objectweb.asm.Opcodes;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Constant;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyConstant;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.ShortArrays;
+import com.gtnewhorizons.neid.client.ClientSectionCache;
+import com.gtnewhorizons.neid.client.PreparedChunk;
+import com.gtnewhorizons.neid.mixins.interfaces.IChunkPacketMixin;
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
+import com.gtnewhorizons.neid.network.AntiXray;
+import com.gtnewhorizons.neid.network.ChunkBulkBuilder;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.ChunkPacketPayloads;
+import com.gtnewhorizons.neid.network.ChunkPacketWriter;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
 import com.llamalad7.mixinextras.injector.WrapWithCondition;
 import com.llamalad7.mixinextras.sugar.Local;
 import com.llamalad7.mixinextras.sugar.ref.LocalIntRef;
 
 @Mixin(S21PacketChunkData.class)
-public class MixinS21PacketChunkData {
+public class MixinS21PacketChunkData implements IChunkPacketMixin {
 
     private static final byte[] fakeByteArray = new byte[0];
     private static final NibbleArray fakeNibbleArray = new NibbleArray(0, 0);
 
+    @Shadow
+    private int field_149284_a;
+
+    @Shadow
+    private int field_149282_b;
+
+    @Shadow
+    private int field_149280_d;
+
+    @Shadow
+    private byte[] field_149278_f;
+
+    @Shadow
+    private boolean field_149279_g;
+
+    /**
+     * Null until the packet is built from a chunk.
+     */
+    @Unique
+    private ChunkPacketPayloads neid$payloads;
+
+    @Unique
+    private int neid$encoding;
+
+    @Unique
+    private PreparedChunk neid$prepared;
+
     @ModifyConstant(
             method = "<clinit>",
             constant = @Constant(intValue = Constants.VANILLA_BYTES_PER_CHUNK),
@@ -46,6 +94,23 @@ public class MixinS21PacketChunkData {
         return Constants.BYTES_PER_EBS;
     }
 
+    @Redirect(
+            method = "func_149269_a",
+            at = @At(
+                    value = "FIELD",
+                    target = "Lnet/minecraft/network/play/server/S21PacketChunkData;field_149286_i:[B",
+                    opcode = Opcodes.GETSTATIC),
+            require = 1)
+    private static byte[] neid$borrowExtractionBuffer() {
+        return ChunkBulkBuilder.extractionBuffer();
+    }
+
+    @Inject(method = "func_149269_a", at = @At("RETURN"), require = 1)
+    private static void neid$releaseExtractionBuffer(Chunk chunk, boolean fullChunk, int sectionMask,
+            CallbackInfoReturnable<S21PacketChunkData.Extracted> cir) {
+        ChunkBulkBuilder.releaseExtractionBuffer();
+    }
+
     @Redirect(
             method = "func_149269_a",
             at = @At(
@@ -55,8 +120,7 @@ public class MixinS21PacketChunkData {
     private static byte[] neid$injectNewDataCopy(ExtendedBlockStorage ebs, @Local(ordinal = 0) byte[] thebytes,
             @Local(ordinal = 1) LocalIntRef offset) {
         IExtendedBlockStorageMixin ebsMixin = (IExtendedBlockStorageMixin) ebs;
-        byte[] data = ebsMixin.getBlockData();
-        System.arraycopy(data, 0, thebytes, offset.get(), Constants.BLOCKS_PER_EBS * 2);
+        ShortArrays.toBytes(ebsMixin.getBlock16BArray(), 0, thebytes, offset.get(), Constants.BLOCKS_PER_EBS);
         offset.set(offset.get() + (Constants.BLOCKS_PER_EBS * 2));
         return fakeByteArray;
     }
@@ -81,8 +145,7 @@ public class MixinS21PacketChunkData {
     private static NibbleArray neid$injectNewMetadataCopy(ExtendedBlockStorage ebs, @Local(ordinal = 0) byte[] thebytes,
             @Local(ordinal = 1) LocalIntRef offset) {
         IExtendedBlockStorageMixin ebsMixin = (IExtendedBlockStorageMixin) ebs;
-        byte[] meta = ebsMixin.getBlockMeta();
-        System.arraycopy(meta, 0, thebytes, offset.get(), Constants.BLOCKS_PER_EBS * 2);
+        ShortArrays.toBytes(ebsMixin.getBlock16BMetaArray(), 0, thebytes, offset.get(), Constants.BLOCKS_PER_EBS);
         offset.set(offset.get() + (Constants.BLOCKS_PER_EBS * 2));
         return fakeNibbleArray;
     }
@@ -109,4 +172,71 @@ public class MixinS21PacketChunkData {
         return null;
     }
 
+    /**
+     * Runs on the extraction workers of bulk packets as well, before the payload is hashed or encoded.
+     */
+    @Inject(method = "func_149269_a", at = @At("RETURN"), require = 1)
+    private static void neid$hideOres(Chunk chunk, boolean fullChunk, int sectionMask,
+            CallbackInfoReturnable<S21PacketChunkData.Extracted> cir) {
+        final S21PacketChunkData.Extracted extracted = cir.getReturnValue();
+        AntiXray.obfuscate(chunk.worldObj.provider.dimensionId, extracted.field_150282_a, extracted.field_150280_b);
+    }
+
+    @Inject(method = "<init>(Lnet/minecraft/world/chunk/Chunk;ZI)V", at = @At("RETURN"), require = 1)
+    private void neid$submitCompression(Chunk chunk, boolean fullChunk, int sectionMask, CallbackInfo ci) {
+        this.neid$payloads = ChunkPacketPayloads.snapshot(chunk.worldObj.provider.dimensionId);
+        if (NEIDConfig.LocalChunkFastPath && NEIDNetwork.localOnly()) {
+            // Compressed when written instead, should a remote player receive it anyway
+            this.neid$prepared = PreparedChunk.snapshot(chunk, this.field_149280_d);
+            return;
+        }
+        this.neid$payloads.submit(this.field_149278_f, Integer.bitCount(this.field_149280_d & 0xFFFF));
+    }
+
+    @Inject(method = "writePacketData", at = @At("HEAD"), cancellable = true, require = 1)
+    private void neid$writeEncodedPayload(PacketBuffer buf, CallbackInfo ci) throws IOException {
+        if (ChunkPacketWriter.writeChunkPacket(
+                buf,
+                this.field_149284_a,
+                this.field_149282_b,
+                this.field_149279_g,
+                this.field_149280_d,
+                this.field_149278_f,
+                this.neid$payloads)) {
+            ci.cancel();
+        }
+    }
+
+    /**
+     * The extended block mask is never used by NEID, so it carries the {@link ChunkEncoding} of the payload instead.
+     */
+    @Redirect(
+            method = "readPacketData",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/network/PacketBuffer;readShort()S", ordinal = 1),
+            require = 1)
+    private short neid$readEncoding(PacketBuffer buf) {
+        this.neid$encoding = buf.readShort() & 0xFFFF;
+        return 0;
+    }
+
+    /**
+     * Runs on the network thread, so the main thread only has to swap the prepared arrays in.
+     */
+    @Inject(method = "readPacketData", at = @At("RETURN"), require = 1)
+    private void neid$decodePayload(PacketBuffer buf, CallbackInfo ci) throws IOException {
+        if (this.neid$encoding != ChunkEncoding.LEGACY) {
+            this.field_149278_f = ChunkEncoding
+                    .decode(this.field_149278_f, Integer.bitCount(this.field_149280_d & 0xFFFF), this.neid$encoding);
+        }
+        if ((this.neid$encoding & ChunkEncoding.SECTION_CACHE) != 0) {
+            ClientSectionCache.resolve(this.field_149278_f, this.field_149280_d);
+        }
+        this.neid$prepared = PreparedChunk.prepare(this.field_149278_f, this.field_149280_d);
+    }
+
+    @Override
+    public PreparedChunk getPreparedChunk(byte[] data) {
+        return data == this.field_149278_f ? this.neid$prepared : null;
+    }
+
 }
@@ -1,7 +1,9 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.server.S21PacketChunkData;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
@@ -10,9 +12,21 @@ import org.apache.logging.log4j.Logger;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.ShortArrays;
+import com.gtnewhorizons.neid.SkylessStorage;
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
+import com.gtnewhorizons.neid.network.AntiXray;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.ChunkPacketWriter;
+import com.gtnewhorizons.neid.network.ChunkPayload;
+import com.gtnewhorizons.neid.network.ChunkPayloadCache;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
 
 /**
  * Ultramine-specific compatibility mixin for S21PacketChunkData.
@@ -27,6 +41,11 @@ public abstract class MixinS21PacketChunkDataUltramine {
 
     private static final Logger LOGGER = LogManager.getLogger("NEID-Ultramine");
 
+    /**
+     * A single section of air with biome 0, sent for chunks without any section.
+     */
+    private static final byte[] EMPTY_CHUNK_DATA = new byte[Constants.BYTES_PER_EBS + 256];
+
     @Shadow
     private byte[] field_149281_e; // deflated data
 
@@ -37,7 +56,31 @@ public abstract class MixinS21PacketChunkDataUltramine {
     private int field_149280_d; // section mask
 
     @Shadow
-    private int field_149283_c; // section mask 2
+    private int field_149283_c; // section mask 2, carries the ChunkEncoding of field_149281_e
+
+    @Shadow
+    private int field_149284_a; // chunk x
+
+    @Shadow
+    private int field_149282_b; // chunk z
+
+    @Shadow
+    private byte[] field_149278_f; // raw data
+
+    @Shadow
+    private boolean field_149279_g; // full chunk
+
+    /**
+     * Payload re-encoded for a connection that did not accept the encoding of field_149281_e.
+     */
+    @Unique
+    private ChunkPayload neid$payload;
+
+    /**
+     * Dimension of the chunk this packet was built from, for the anti-xray tables and the payload cache.
+     */
+    @Unique
+    private int neid$dimension = ChunkPayloadCache.UNKNOWN_DIMENSION;
 
     /**
      * OVERWRITE ultramine's func_149269_a() to send vanilla NEID format (16-bit blocks) instead of ultramine format
@@ -78,6 +121,7 @@ public abstract class MixinS21PacketChunkDataUltramine {
 
             // Create NEID vanilla format data
             byte[] neidData = createNeidFormatData(ebsArray, ebsMask, fullChunk, chunk);
+            AntiXray.obfuscate(getDimension(chunk), neidData, ebsMask);
             extracted.field_150282_a = neidData;
 
             // DEBUG: Uncomment for debugging
@@ -93,6 +137,16 @@ public abstract class MixinS21PacketChunkDataUltramine {
         }
     }
 
+    @Inject(method = "<init>(Lnet/minecraft/world/chunk/Chunk;ZI)V", at = @At("RETURN"), require = 1)
+    private void neid$recordDimension(net.minecraft.world.chunk.Chunk chunk, boolean fullChunk, int sectionMask,
+            CallbackInfo ci) {
+        try {
+            this.neid$dimension = getDimension(chunk);
+        } catch (Exception e) {
+            LOGGER.error("Failed to read the dimension of chunk ({},{})", chunk.xPosition, chunk.zPosition, e);
+        }
+    }
+
     private static boolean isEbsEmpty(ExtendedBlockStorage ebs) throws Exception {
         return (boolean) ebs.getClass().getMethod("func_76663_a").invoke(ebs); // isEmpty()
     }
@@ -103,6 +157,12 @@ public abstract class MixinS21PacketChunkDataUltramine {
         return (boolean) provider.getClass().getField("field_76576_e").get(provider); // hasNoSky
     }
 
+    private static int getDimension(net.minecraft.world.chunk.Chunk chunk) throws Exception {
+        Object worldObj = chunk.getClass().getField("field_76637_e").get(chunk); // worldObj
+        Object provider = worldObj.getClass().getField("field_73011_w").get(worldObj); // provider
+        return provider.getClass().getField("field_76574_g").getInt(provider); // dimensionId
+    }
+
     /**
      * Creates vanilla NEID format data from MemSlot. Format: [all Blocks 16-bit][all Metadata 16-bit][all
      * BlockLight][all SkyLight][biome]
@@ -111,7 +171,8 @@ public abstract class MixinS21PacketChunkDataUltramine {
             net.minecraft.world.chunk.Chunk chunk) {
         try {
             int ebsCount = Integer.bitCount(ebsMask);
-            int totalSize = ebsCount * Constants.BYTES_PER_EBS;
+            final boolean hasNoSky = isWorldHasNoSky(chunk);
+            int totalSize = ebsCount * SkylessStorage.bytesPerEbs(hasNoSky);
 
             if (fullChunk) {
                 totalSize += 256; // Biome array
@@ -119,6 +180,7 @@ public abstract class MixinS21PacketChunkDataUltramine {
 
             byte[] data = new byte[totalSize];
             int offset = 0;
+            short[] section16 = new short[Constants.BLOCKS_PER_EBS];
 
             // DEBUG: Uncomment for debugging
             // LOGGER.info("Creating NEID format: ebsCount={}, totalSize={}", ebsCount, totalSize);
@@ -163,13 +225,15 @@ public abstract class MixinS21PacketChunkDataUltramine {
                              * if (blockId != 0) { nonZeroBlocks++; if (msbVal != 0) blocksWithMSB++; }
                              */
 
-                            // Write as big-endian 16-bit
-                            data[offset++] = (byte) ((blockId >> 8) & 0xFF);
-                            data[offset++] = (byte) (blockId & 0xFF);
+                            section16[index] = (short) blockId;
                         }
                     }
                 }
 
+                // Write as big-endian 16-bit
+                ShortArrays.toBytes(section16, 0, data, offset, Constants.BLOCKS_PER_EBS);
+                offset += Constants.BLOCKS_PER_EBS * 2;
+
                 // DEBUG: Uncomment for logging
                 // LOGGER.info("EBS section={}: nonZero={}, withMSB={}", sectionIndex, nonZeroBlocks, blocksWithMSB);
             }
@@ -189,14 +253,14 @@ public abstract class MixinS21PacketChunkDataUltramine {
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            int metaVal = get4bitsCoordinate(meta, x, y, z);
-
-                            // Write as big-endian 16-bit
-                            data[offset++] = 0; // MSB always 0
-                            data[offset++] = (byte) (metaVal & 0xFF);
+                            section16[y << 8 | z << 4 | x] = (short) get4bitsCoordinate(meta, x, y, z);
                         }
                     }
                 }
+
+                // Write as big-endian 16-bit
+                ShortArrays.toBytes(section16, 0, data, offset, Constants.BLOCKS_PER_EBS);
+                offset += Constants.BLOCKS_PER_EBS * 2;
             }
 
             // PHASE 3: Write all BlockLight (2048 bytes per EBS)
@@ -211,7 +275,7 @@ public abstract class MixinS21PacketChunkDataUltramine {
             }
 
             // PHASE 4: Write all SkyLight (2048 bytes per EBS)
-            if (!isWorldHasNoSky(chunk)) {
+            if (!hasNoSky) {
                 for (int sectionIndex = 0; sectionIndex < 16; sectionIndex++) {
                     if ((ebsMask & (1 << sectionIndex)) == 0) continue;
 
@@ -312,9 +376,6 @@ public abstract class MixinS21PacketChunkDataUltramine {
         // DEBUG: Uncomment for debugging
         // LOGGER.info("@@@ INJECT deflate() - converting ChunkSnapshot to NEID 16-bit!");
 
-        java.util.zip.Deflater deflater = new java.util.zip.Deflater(7);
-        // DEBUG: Uncomment for debugging
-        // LOGGER.info("[DEFLATE] Step 1: Created Deflater");
         try {
             // Get ExtendedBlockStorage[] from ChunkSnapshot
             ExtendedBlockStorage[] ebsArr = (ExtendedBlockStorage[]) chunkSnapshot.getClass().getMethod("getEbsArr")
@@ -335,12 +396,17 @@ public abstract class MixinS21PacketChunkDataUltramine {
                 // Empty chunk
                 // DEBUG: Uncomment for debugging
                 // LOGGER.info("[DEFLATE] Step 4: Empty chunk, returning");
-                byte[] EMPTY_CHUNK_SEQUENCE = { 120, -38, -19, -65, 49, 1, 0, 0, 0, -62, -96, -11, 79, 109, 13, 15, -96,
-                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -128, 119, 3, 48, 0, 0, 1 };
-                this.field_149281_e = EMPTY_CHUNK_SEQUENCE;
-                this.field_149285_h = EMPTY_CHUNK_SEQUENCE.length;
+                ChunkPayload payload = ChunkPayloadCache.encode(
+                        this.neid$dimension,
+                        EMPTY_CHUNK_DATA,
+                        EMPTY_CHUNK_DATA.length,
+                        1,
+                        ChunkEncoding.enabledPayload(),
+                        ChunkPayload.CHUNK_LEVEL);
+                this.field_149281_e = payload.data;
+                this.field_149285_h = payload.length;
                 this.field_149280_d = 1;
-                this.field_149283_c = 1;
+                this.field_149283_c = payload.encoding;
                 return;
             }
 
@@ -355,7 +421,7 @@ public abstract class MixinS21PacketChunkDataUltramine {
             // DEBUG: Uncomment for debugging
             // LOGGER.info("[DEFLATE] Step 6: biomeArray.length={}", biomeArray != null ? biomeArray.length : "null");
 
-            int totalSize = ebsCount * Constants.BYTES_PER_EBS + biomeArray.length;
+            int totalSize = ebsCount * SkylessStorage.bytesPerEbs(hasNoSky) + biomeArray.length;
             // DEBUG: Uncomment for debugging
             // LOGGER.info("[DEFLATE] Step 7: totalSize={}", totalSize);
             byte[] data = new byte[totalSize];
@@ -376,11 +442,8 @@ public abstract class MixinS21PacketChunkDataUltramine {
                 short[] blockArray = ebsMixin.getBlock16BArray();
 
                 if (blockArray != null) {
-                    for (int j = 0; j < 4096; j++) {
-                        int blockId = blockArray[j] & 0xFFFF;
-                        data[offset++] = (byte) ((blockId >> 8) & 0xFF);
-                        data[offset++] = (byte) (blockId & 0xFF);
-                    }
+                    ShortArrays.toBytes(blockArray, 0, data, offset, Constants.BLOCKS_PER_EBS);
+                    offset += 8192;
                 } else {
                     LOGGER.warn("Block16BArray is null for EBS {}, using zeros", i);
                     offset += 8192;
@@ -396,11 +459,8 @@ public abstract class MixinS21PacketChunkDataUltramine {
                 short[] metaArray = ebsMixin.getBlock16BMetaArray();
 
                 if (metaArray != null) {
-                    for (int j = 0; j < 4096; j++) {
-                        int meta = metaArray[j] & 0xFFFF;
-                        data[offset++] = (byte) ((meta >> 8) & 0xFF);
-                        data[offset++] = (byte) (meta & 0xFF);
-                    }
+                    ShortArrays.toBytes(metaArray, 0, data, offset, Constants.BLOCKS_PER_EBS);
+                    offset += 8192;
                 } else {
                     LOGGER.warn("Block16BMetaArray is null for EBS {}, using zeros", i);
                     offset += 8192;
@@ -430,25 +490,28 @@ public abstract class MixinS21PacketChunkDataUltramine {
             // PHASE 5: Write biome
             System.arraycopy(biomeArray, 0, data, offset, biomeArray.length);
 
-            // Deflate the data
-            deflater.setInput(data, 0, data.length);
-            deflater.finish();
+            // Ultramine's own anti-xray only knows the 12-bit ids of the MemSlot. The snapshot doesn't tell which world
+            // it was taken from, the dimension was recorded when the packet was built from its chunk
+            AntiXray.obfuscate(this.neid$dimension, data, mask);
 
-            byte[] deflated = new byte[4096];
-            int deflatedLen = 0;
-            while (!deflater.finished()) {
-                if (deflatedLen == deflated.length) deflated = java.util.Arrays.copyOf(deflated, deflated.length * 2);
-                deflatedLen += deflater.deflate(deflated, deflatedLen, deflated.length - deflatedLen);
-            }
+            // Encode with every enabled encoding and deflate the data, connections that did not accept it are
+            // transcoded in neid$writePacketData
+            ChunkPayload payload = ChunkPayloadCache.encode(
+                    this.neid$dimension,
+                    data,
+                    data.length,
+                    ebsCount,
+                    ChunkEncoding.enabledPayload(),
+                    ChunkPayload.CHUNK_LEVEL);
 
             // Release snapshot
             chunkSnapshot.getClass().getMethod("release").invoke(chunkSnapshot);
 
             // Set deflated data to this packet
-            this.field_149281_e = deflated;
-            this.field_149285_h = deflatedLen;
+            this.field_149281_e = payload.data;
+            this.field_149285_h = payload.length;
             this.field_149280_d = mask;
-            this.field_149283_c = mask;
+            this.field_149283_c = payload.encoding;
 
             // DEBUG: Uncomment for debugging
             /*
@@ -461,8 +524,52 @@ public abstract class MixinS21PacketChunkDataUltramine {
             // Set empty data to avoid crash
             this.field_149281_e = new byte[0];
             this.field_149285_h = 0;
-        } finally {
-            deflater.end();
         }
     }
+
+    /**
+     * Picks the payload matching the encoding accepted by the connection being written to. Payloads deflated by
+     * ChunkSendManager are encoded with every enabled encoding and are transcoded when the connection did not accept
+     * one of them, payloads still waiting for Forge's lazy deflate are encoded directly.
+     */
+    @Inject(method = "writePacketData", at = @At("HEAD"), cancellable = true, require = 1)
+    private void neid$writePacketData(PacketBuffer buf, CallbackInfo ci) throws IOException {
+        final int encoding = NEIDNetwork.currentEncoding();
+        ChunkPayload payload = this.neid$payload;
+        if (payload == null || payload.encoding != encoding) {
+            final int sections = Integer.bitCount(this.field_149280_d & 0xFFFF);
+            if (this.field_149281_e != null) {
+                if ((this.field_149283_c & ~encoding) == 0) {
+                    return;
+                }
+                payload = ChunkPayload.transcode(
+                        this.field_149281_e,
+                        this.field_149285_h,
+                        sections,
+                        this.field_149279_g,
+                        this.field_149283_c,
+                        encoding,
+                        ChunkPayload.CHUNK_LEVEL);
+            } else if (encoding != ChunkEncoding.LEGACY && this.field_149278_f != null) {
+                payload = ChunkPayloadCache.encode(
+                        this.neid$dimension,
+                        this.field_149278_f,
+                        this.field_149278_f.length,
+                        sections,
+                        encoding,
+                        ChunkPayload.CHUNK_LEVEL);
+            } else {
+                return;
+            }
+            this.neid$payload = payload;
+        }
+        ChunkPacketWriter.writeChunkData(
+                buf,
+                this.field_149284_a,
+                this.field_149282_b,
+                this.field_149279_g,
+                this.field_149280_d,
+                payload);
+        ci.cancel();
+    }
 }
@@ -1,11 +1,12 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
-import java.io.IOException;
 
 import net.minecraft.block.Block;
 import net.minecraft.network.play.server.S22PacketMultiBlockChange;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,6 +14,9 @@ import org.spongepowered.asm.mixin.injection.Constant;
 import org.spongepowered.asm.mixin.injection.ModifyConstant;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
+import com.gtnewhorizons.neid.Common;
+import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
+import com.llamalad7.mixinextras.injector.WrapWithCondition;
 import com.llamalad7.mixinextras.sugar.Local;
 
 @Mixin(S22PacketMultiBlockChange.class)
@@ -34,14 +38,89 @@ public class MixinS22PacketMultiBlockChange {
         return 6;
     }
 
+    /**
+     * The records are encoded all at once in {@link #neid$encodeRecords}, so the per-record stream writes and the
+     * chunk lookups feeding them are skipped.
+     */
+    @WrapWithCondition(
+            method = "<init>(I[SLnet/minecraft/world/chunk/Chunk;)V",
+            at = @At(value = "INVOKE", target = "Ljava/io/DataOutputStream;writeShort(I)V"),
+            require = 2)
+    private boolean neid$skipRecordWrite(DataOutputStream dataOutputStream, int i) {
+        return false;
+    }
+
+    @Redirect(
+            method = "<init>(I[SLnet/minecraft/world/chunk/Chunk;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/world/chunk/Chunk;getBlock(III)Lnet/minecraft/block/Block;"),
+            require = 1)
+    private Block neid$skipBlockLookup(Chunk chunk, int x, int y, int z) {
+        return null;
+    }
+
+    @Redirect(
+            method = "<init>(I[SLnet/minecraft/world/chunk/Chunk;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/block/Block;getIdFromBlock(Lnet/minecraft/block/Block;)I"),
+            require = 1)
+    private int neid$skipIdLookup(Block block) {
+        return 0;
+    }
+
+    @Redirect(
+            method = "<init>(I[SLnet/minecraft/world/chunk/Chunk;)V",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/Chunk;getBlockMetadata(III)I"),
+            require = 1)
+    private int neid$skipMetadataLookup(Chunk chunk, int x, int y, int z) {
+        return 0;
+    }
+
     @Redirect(
             method = "<init>(I[SLnet/minecraft/world/chunk/Chunk;)V",
-            at = @At(value = "INVOKE", target = "Ljava/io/DataOutputStream;writeShort(I)V", ordinal = 1),
+            at = @At(value = "INVOKE", target = "Ljava/io/ByteArrayOutputStream;toByteArray()[B"),
             require = 1)
-    private void neid$writeShortRedirectInConstructor(DataOutputStream dataOutputStream, int i,
-            @Local Chunk p_i45181_3_, @Local(ordinal = 3) int l, @Local(ordinal = 4) int i1, @Local(ordinal = 5) int j1)
-            throws IOException {
-        dataOutputStream.writeShort(Block.getIdFromBlock(p_i45181_3_.getBlock(l, j1, i1)));
-        dataOutputStream.writeShort(p_i45181_3_.getBlockMetadata(l, j1, i1));
+    private byte[] neid$encodeRecords(ByteArrayOutputStream byteArrayOutputStream,
+            @Local(argsOnly = true) int records, @Local(argsOnly = true) short[] locations,
+            @Local(argsOnly = true) Chunk chunk) {
+        final byte[] data = new byte[records * 6];
+        final ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        int sectionY = -1;
+        short[] ids = null;
+        short[] metas = null;
+        for (int i = 0, pos = 0; i < records; i++) {
+            final int location = locations[i];
+            final int x = location >> 12 & 15;
+            final int z = location >> 8 & 15;
+            final int y = location & 255;
+            int id = 0;
+            int meta = 0;
+            if (Common.ultramineTainted) {
+                // Ultramine writes to its own storage, the NEID arrays may be stale
+                id = Block.getIdFromBlock(chunk.getBlock(x, y, z));
+                meta = chunk.getBlockMetadata(x, y, z);
+            } else {
+                if (y >> 4 != sectionY) {
+                    sectionY = y >> 4;
+                    final ExtendedBlockStorage ebs = storage[sectionY];
+                    ids = ebs == null ? null : ((IExtendedBlockStorageMixin) ebs).getBlock16BArray();
+                    metas = ebs == null ? null : ((IExtendedBlockStorageMixin) ebs).getBlock16BMetaArray();
+                }
+                if (ids != null) {
+                    final int index = (y & 15) << 8 | z << 4 | x;
+                    id = ids[index];
+                    meta = metas[index];
+                }
+            }
+            data[pos++] = (byte) (location >> 8);
+            data[pos++] = (byte) location;
+            data[pos++] = (byte) (id >> 8);
+            data[pos++] = (byte) id;
+            data[pos++] = (byte) (meta >> 8);
+            data[pos++] = (byte) meta;
+        }
+        return data;
     }
 }
@@ -1,15 +1,102 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.S21PacketChunkData;
 import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.world.chunk.Chunk;
 
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Constant;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyConstant;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.client.ClientSectionCache;
+import com.gtnewhorizons.neid.client.PreparedChunk;
+import com.gtnewhorizons.neid.mixins.interfaces.IChunkPacketMixin;
+import com.gtnewhorizons.neid.network.ChunkBulkBuilder;
+import com.gtnewhorizons.neid.network.ChunkCompressor;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.ChunkPacketWriter;
+import com.gtnewhorizons.neid.network.ChunkPayload;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
+import com.gtnewhorizons.neid.network.SectionCache;
+import com.llamalad7.mixinextras.sugar.Local;
 
 @Mixin(S26PacketMapChunkBulk.class)
-public class MixinS26PacketMapChunkBulk {
+public class MixinS26PacketMapChunkBulk implements IChunkPacketMixin {
+
+    @Shadow
+    private int[] field_149266_a;
+
+    @Shadow
+    private int[] field_149264_b;
+
+    @Shadow
+    private int[] field_149265_c;
+
+    @Shadow
+    private byte[][] field_149260_f;
+
+    @Shadow
+    private boolean field_149267_h;
+
+    /**
+     * The payload encoded for connections that accepted a non-legacy encoding. Connections using the legacy layout
+     * keep going through Forge's lazy deflate, unless the payload compressed in the background is a legacy one.
+     */
+    @Unique
+    private volatile ChunkPayload neid$payload;
+
+    /**
+     * Payload compressed by {@link ChunkCompressor} with the locally enabled encodings. Set once and kept once done, the
+     * packet is written by the network threads of several connections at once.
+     */
+    @Unique
+    private volatile Future<ChunkPayload> neid$pending;
+
+    /**
+     * Written before {@link #neid$pending}, which publishes it.
+     */
+    @Unique
+    private int neid$pendingEncoding;
+
+    /**
+     * Every chunk of the packet, extracted in parallel on the first call to func_149269_a.
+     */
+    @Unique
+    private S21PacketChunkData.Extracted[] neid$extracted;
+
+    @Unique
+    private int neid$extractedCount;
+
+    @Unique
+    private int[] neid$encodings;
+
+    @Unique
+    private PreparedChunk[] neid$prepared;
+
+    @Unique
+    private int neid$encodingCount;
+
+    /**
+     * Start of the next chunk in the inflated payload being split.
+     */
+    @Unique
+    private int neid$readOffset;
+
+    @Unique
+    private volatile long[][] neid$sectionHashes;
 
     @ModifyConstant(
             method = "readPacketData",
@@ -18,4 +105,183 @@ public class MixinS26PacketMapChunkBulk {
     private static int neid$readPacketConstantUpdate(int i) {
         return Constants.BYTES_PER_EBS_MINUS_LIGHTING_BUT_INCLUDE_MSB;
     }
+
+    @Redirect(
+            method = "<init>(Ljava/util/List;)V",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/network/play/server/S21PacketChunkData;func_149269_a(Lnet/minecraft/world/chunk/Chunk;ZI)Lnet/minecraft/network/play/server/S21PacketChunkData$Extracted;"),
+            require = 1)
+    private S21PacketChunkData.Extracted neid$extractInParallel(Chunk chunk, boolean fullChunk, int sectionMask,
+            @Local(argsOnly = true) List<Chunk> chunks) {
+        if (this.neid$extracted == null) {
+            this.neid$extracted = ChunkBulkBuilder.extract(chunks, fullChunk, sectionMask);
+        }
+        return this.neid$extracted[this.neid$extractedCount++];
+    }
+
+    @Inject(method = "<init>(Ljava/util/List;)V", at = @At("RETURN"), require = 1)
+    private void neid$submitCompression(List<?> chunks, CallbackInfo ci) {
+        this.neid$extracted = null;
+        final byte[][] data = this.field_149260_f;
+        final int[] sectionMasks = this.field_149265_c;
+        if (NEIDConfig.LocalChunkFastPath && NEIDNetwork.localOnly()) {
+            // Compressed when written instead, should a remote player receive it anyway
+            this.neid$prepared = new PreparedChunk[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                this.neid$prepared[i] = PreparedChunk.snapshot((Chunk) chunks.get(i), sectionMasks[i]);
+            }
+            return;
+        }
+        final int encoding = ChunkEncoding.enabledPayload();
+        if (!NEIDNetwork.hasRemotePlayers(encoding)) {
+            return;
+        }
+        this.neid$pendingEncoding = encoding;
+        this.neid$pending = ChunkCompressor
+                .submit(() -> ChunkPayload.encodeBulk(data, sectionMasks, encoding, ChunkPayload.BULK_LEVEL));
+    }
+
+    /**
+     * Computed by the first connection using a {@link SectionCache}, and shared by the others.
+     */
+    @Unique
+    private long[][] neid$sectionHashes() {
+        long[][] hashes = this.neid$sectionHashes;
+        if (hashes == null) {
+            hashes = new long[this.field_149260_f.length][];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = SectionCache
+                        .hashes(this.field_149260_f[i], Integer.bitCount(this.field_149265_c[i] & 0xFFFF));
+            }
+            this.neid$sectionHashes = hashes;
+        }
+        return hashes;
+    }
+
+    @Inject(method = "writePacketData", at = @At("HEAD"), cancellable = true, require = 1)
+    private void neid$writeEncodedPayload(PacketBuffer buf, CallbackInfo ci) throws IOException {
+        final int encoding = NEIDNetwork.currentEncoding();
+        final SectionCache sectionCache = NEIDNetwork.currentSectionCache();
+        byte[][] elided = null;
+        if (sectionCache != null) {
+            // Every chunk goes through the cache in order, even if an earlier one is unchanged
+            final long[][] hashes = this.neid$sectionHashes();
+            for (int i = 0; i < this.field_149260_f.length; i++) {
+                final byte[] chunk = sectionCache.elide(
+                        this.field_149260_f[i],
+                        Integer.bitCount(this.field_149265_c[i] & 0xFFFF),
+                        hashes[i]);
+                if (chunk != null) {
+                    if (elided == null) {
+                        elided = this.field_149260_f.clone();
+                    }
+                    elided[i] = chunk;
+                }
+            }
+        }
+        ChunkPayload payload;
+        if (elided != null) {
+            payload = ChunkPayload.encodeBulk(elided, this.field_149265_c, encoding, ChunkPayload.BULK_LEVEL);
+        } else {
+            // Only waits for the background compression if this connection can use its payload
+            final Future<ChunkPayload> pending = this.neid$pending;
+            payload = pending != null && encoding == this.neid$pendingEncoding ? ChunkCompressor.await(pending)
+                    : this.neid$payload;
+            if (payload == null || payload.encoding != encoding) {
+                if (encoding == ChunkEncoding.LEGACY && sectionCache == null) {
+                    return;
+                }
+                payload = ChunkPayload
+                        .encodeBulk(this.field_149260_f, this.field_149265_c, encoding, ChunkPayload.BULK_LEVEL);
+                this.neid$payload = payload;
+            }
+        }
+        if (sectionCache != null) {
+            payload = payload.withFlags(ChunkEncoding.SECTION_CACHE);
+        }
+        ChunkPacketWriter.writeMapChunkBulk(
+                buf,
+                this.field_149266_a,
+                this.field_149264_b,
+                this.field_149265_c,
+                this.field_149267_h,
+                payload);
+        ci.cancel();
+    }
+
+    /**
+     * The extended block mask is never used by NEID, so it carries the {@link ChunkEncoding} of the payload instead.
+     */
+    @Redirect(
+            method = "readPacketData",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/network/PacketBuffer;readShort()S", ordinal = 2),
+            require = 1)
+    private short neid$readEncoding(PacketBuffer buf) {
+        if (this.neid$encodings == null) {
+            this.neid$encodings = new int[this.field_149266_a.length];
+        }
+        this.neid$encodings[this.neid$encodingCount++] = buf.readShort() & 0xFFFF;
+        return 0;
+    }
+
+    /**
+     * Chunks encoded with {@link ChunkEncoding#UNIFORM_LIGHT} take less space than vanilla computes from their section
+     * mask, so the chunks are split by their actual size instead.
+     */
+    @Redirect(
+            method = "readPacketData",
+            at = @At(value = "INVOKE", target = "Ljava/lang/System;arraycopy(Ljava/lang/Object;ILjava/lang/Object;II)V"),
+            require = 1)
+    private void neid$splitEncodedChunk(Object src, int srcPos, Object dst, int dstPos, int length) {
+        final int chunk = this.neid$encodingCount - 1;
+        final int encoding = this.neid$encodings == null ? ChunkEncoding.LEGACY : this.neid$encodings[chunk];
+        final int encodedLength = ChunkEncoding.encodedLength(
+                (byte[]) src,
+                this.neid$readOffset,
+                length,
+                Integer.bitCount(this.field_149265_c[chunk] & 0xFFFF),
+                encoding);
+        System.arraycopy(src, this.neid$readOffset, dst, dstPos, encodedLength);
+        this.neid$readOffset += encodedLength;
+    }
+
+    /**
+     * Runs on the network thread, so the main thread only has to swap the prepared arrays in.
+     */
+    @Inject(method = "readPacketData", at = @At("RETURN"), require = 1)
+    private void neid$decodePayload(PacketBuffer buf, CallbackInfo ci) throws IOException {
+        if (this.neid$encodings != null) {
+            for (int i = 0; i < this.neid$encodingCount; i++) {
+                if (this.neid$encodings[i] != ChunkEncoding.LEGACY) {
+                    this.field_149260_f[i] = ChunkEncoding.decode(
+                            this.field_149260_f[i],
+                            Integer.bitCount(this.field_149265_c[i] & 0xFFFF),
+                            this.neid$encodings[i]);
+                }
+            }
+            for (int i = 0; i < this.neid$encodingCount; i++) {
+                if ((this.neid$encodings[i] & ChunkEncoding.SECTION_CACHE) != 0) {
+                    ClientSectionCache.resolve(this.field_149260_f[i], this.field_149265_c[i]);
+                }
+            }
+            this.neid$encodings = null;
+        }
+        this.neid$prepared = new PreparedChunk[this.field_149260_f.length];
+        for (int i = 0; i < this.field_149260_f.length; i++) {
+            this.neid$prepared[i] = PreparedChunk.prepare(this.field_149260_f[i], this.field_149265_c[i]);
+        }
+    }
+
+    @Override
+    public PreparedChunk getPreparedChunk(byte[] data) {
+        if (this.neid$prepared != null) {
+            for (int i = 0; i < this.field_149260_f.length; i++) {
+                if (this.field_149260_f[i] == data) {
+                    return this.neid$prepared[i];
+                }
+            }
+        }
+        return null;
+    }
 }
@@ -1,8 +1,5 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft.client;
 
-import java.nio.ByteBuffer;
-import java.nio.ShortBuffer;
-
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
@@ -15,6 +12,8 @@ import org.spongepowered.asm.mixin.injection.ModifyConstant;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.ShortArrays;
+import com.gtnewhorizons.neid.client.PreparedChunk;
 import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
 import com.llamalad7.mixinextras.injector.WrapWithCondition;
 import com.llamalad7.mixinextras.sugar.Local;
@@ -38,8 +37,12 @@ public class MixinChunk {
     private byte[] neid$injectNewDataCopy(ExtendedBlockStorage ebs, @Local(ordinal = 0) byte[] thebytes,
             @Local(ordinal = 2) LocalIntRef offset) {
         IExtendedBlockStorageMixin ebsMixin = (IExtendedBlockStorageMixin) ebs;
-        ShortBuffer.wrap(ebsMixin.getBlock16BArray())
-                .put(ByteBuffer.wrap(thebytes, offset.get(), Constants.BLOCKS_PER_EBS * 2).asShortBuffer());
+        final short[] prepared = PreparedChunk.takeIds(ebs.getYLocation() >> 4);
+        if (prepared != null) {
+            ebsMixin.setBlock16BArray(prepared);
+        } else {
+            ShortArrays.fromBytes(thebytes, offset.get(), ebsMixin.getBlock16BArray(), 0, Constants.BLOCKS_PER_EBS);
+        }
         offset.set(offset.get() + (Constants.BLOCKS_PER_EBS * 2));
         return fakeByteArray;
     }
@@ -53,8 +56,12 @@ public class MixinChunk {
     private NibbleArray neid$injectNewMetadataCopy(ExtendedBlockStorage ebs, @Local(ordinal = 0) byte[] thebytes,
             @Local(ordinal = 2) LocalIntRef offset) {
         IExtendedBlockStorageMixin ebsMixin = (IExtendedBlockStorageMixin) ebs;
-        ShortBuffer.wrap(ebsMixin.getBlock16BMetaArray())
-                .put(ByteBuffer.wrap(thebytes, offset.get(), Constants.BLOCKS_PER_EBS * 2).asShortBuffer());
+        final short[] prepared = PreparedChunk.takeMetas(ebs.getYLocation() >> 4);
+        if (prepared != null) {
+            ebsMixin.setBlock16BMetaArray(prepared);
+        } else {
+            ShortArrays.fromBytes(thebytes, offset.get(), ebsMixin.getBlock16BMetaArray(), 0, Constants.BLOCKS_PER_EBS);
+        }
         offset.set(offset.get() + (Constants.BLOCKS_PER_EBS * 2));
         return fakeNibbleArray;
     }
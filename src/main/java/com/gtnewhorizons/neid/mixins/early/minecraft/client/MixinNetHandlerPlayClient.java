@@ -1,41 +1,78 @@
 package com.gtnewhorizons.neid.mixins.early.minecraft.client;
 
-import java.io.DataInputStream;
-import java.io.IOException;
-
-import net.minecraft.block.Block;
+import net.minecraft.client.multiplayer.WorldClient;
 import net.minecraft.client.network.NetHandlerPlayClient;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.network.play.server.S22PacketMultiBlockChange;
+import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.chunk.Chunk;
 
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
-import org.spongepowered.asm.mixin.injection.ModifyArg;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
-import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.client.ClientBlockUpdates;
+import com.gtnewhorizons.neid.client.PreparedChunk;
+import com.gtnewhorizons.neid.mixins.interfaces.IChunkPacketMixin;
 import com.llamalad7.mixinextras.sugar.Local;
 
 @Mixin(NetHandlerPlayClient.class)
 public class MixinNetHandlerPlayClient {
 
+    @Shadow
+    private WorldClient clientWorldController;
+
+    /**
+     * Decodes the 16-bit id and metadata records up front and applies them as one batch, instead of a
+     * WorldClient.func_147492_c call and render update per record.
+     */
+    @Inject(method = "handleMultiBlockChange", at = @At("HEAD"), cancellable = true, require = 1)
+    private void neid$handleMultiBlockChangeBatched(S22PacketMultiBlockChange packet, CallbackInfo ci) {
+        ci.cancel();
+        if (packet.func_148921_d() == null) {
+            return;
+        }
+        final ChunkCoordIntPair chunk = packet.func_148920_c();
+        ClientBlockUpdates.applyMultiBlockChange(
+                this.clientWorldController,
+                chunk.chunkXPos,
+                chunk.chunkZPos,
+                packet.func_148921_d(),
+                packet.func_148922_e());
+    }
+
     @Redirect(
-            method = "handleMultiBlockChange",
-            at = @At(
-                    value = "INVOKE",
-                    target = "Lnet/minecraft/block/Block;getBlockById(I)Lnet/minecraft/block/Block;"),
+            method = "handleChunkData",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/Chunk;fillChunk([BIIZ)V"),
             require = 1)
-    private Block neid$handleMultiBlockChangeRedirect(int i, @Local(ordinal = 1) short short2) {
-        return Block.getBlockById(short2);
+    private void neid$fillChunkPrepared(Chunk chunk, byte[] data, int sectionMask, int msbMask, boolean fullChunk,
+            @Local(argsOnly = true) S21PacketChunkData packet) {
+        PreparedChunk.fillChunk(
+                chunk,
+                data,
+                sectionMask,
+                msbMask,
+                fullChunk,
+                ((IChunkPacketMixin) packet).getPreparedChunk(data));
     }
 
-    @ModifyArg(
-            method = "handleMultiBlockChange",
-            at = @At(
-                    value = "INVOKE",
-                    target = "Lnet/minecraft/client/multiplayer/WorldClient;func_147492_c(IIILnet/minecraft/block/Block;I)Z"),
-            index = 4,
+    @Redirect(
+            method = "handleMapChunkBulk",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/Chunk;fillChunk([BIIZ)V"),
             require = 1)
-    private int neid$handleMultiBlockChangeRedirect2(int i, @Local DataInputStream datainputstream) throws IOException {
-        return datainputstream.readShort() & Constants.METADATA_MASK;
+    private void neid$fillBulkChunkPrepared(Chunk chunk, byte[] data, int sectionMask, int msbMask,
+            boolean fullChunk, @Local(argsOnly = true) S26PacketMapChunkBulk packet) {
+        PreparedChunk.fillChunk(
+                chunk,
+                data,
+                sectionMask,
+                msbMask,
+                fullChunk,
+                ((IChunkPacketMixin) packet).getPreparedChunk(data));
     }
 
 }
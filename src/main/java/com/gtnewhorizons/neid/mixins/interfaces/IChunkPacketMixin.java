@@ -0,0 +1,13 @@
+package com.gtnewhorizons.neid.mixins.interfaces;
+
+import com.gtnewhorizons.neid.client.PreparedChunk;
+
+public interface IChunkPacketMixin {
+
+    /**
+     * @param data The payload of one chunk of the packet, as passed to Chunk.fillChunk
+     * @return The arrays decoded from it when the packet was read, or null
+     */
+    PreparedChunk getPreparedChunk(byte[] data);
+
+}
@@ -6,6 +6,10 @@ public interface IExtendedBlockStorageMixin {
 
     short[] getBlock16BMetaArray();
 
+    void setBlock16BArray(short[] ids);
+
+    void setBlock16BMetaArray(short[] metas);
+
     byte[] getBlockData();
 
     byte[] getBlockMeta();
@@ -14,4 +18,8 @@ public interface IExtendedBlockStorageMixin {
 
     void setBlockMeta(byte[] data, int offset);
 
+    long[] getBlockIdSummary();
+
+    void rebuildBlockIdSummary();
+
 }
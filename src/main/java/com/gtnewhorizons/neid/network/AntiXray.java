@@ -0,0 +1,329 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Hides blocks, usually ores, that players couldn't see anyway. Works on the 16-bit ids and metadata of an extracted
+ * chunk payload before it is encoded, so ids above 4095 can be hidden as well. Hidden blocks that touch a transparent
+ * block, or that are on the border of the chunk whose neighbour isn't part of the payload, are sent as they are.
+ *
+ * The exposure of a section is computed once as bitsets of 4096 bits: the transparent blocks of the section, spread by
+ * one block in every direction with shifts. A section without any hidden block is only read once.
+ */
+public final class AntiXray {
+
+    private static final Logger LOGGER = LogManager.getLogger("NEID");
+
+    /**
+     * A position of a section in the 64-bit words of its bitsets: y << 8 | z << 4 | x, so a word holds 4 rows of
+     * blocks along x, and a layer of blocks along y is 4 words.
+     */
+    private static final int WORDS = Constants.BLOCKS_PER_EBS / 64;
+
+    /**
+     * Blocks of a word on the border of the chunk along x.
+     */
+    private static final long X_BORDER = 0x8001800180018001L;
+
+    /**
+     * Blocks of the first and the last row of a word, which are on the border of the chunk along z in the first and
+     * last word of a layer.
+     */
+    private static final long FIRST_ROW = 0xFFFFL;
+    private static final long LAST_ROW = 0xFFFFL << 48;
+
+    private static final int NOT_HIDDEN = -1;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final Map<Integer, int[]> REPLACEMENTS = new ConcurrentHashMap<>();
+
+    /**
+     * The config the cached tables were parsed from, they are parsed again when it is changed in game.
+     */
+    private static volatile String[] parsedFrom;
+
+    /**
+     * Bitset of the ids of blocks that can't be seen through, read from the block registry on first use.
+     */
+    private static volatile long[] opaque;
+
+    private AntiXray() {}
+
+    /**
+     * Hides the blocks that can't be seen in a payload in the legacy layout.
+     *
+     * @param dimension   The dimension of the chunk, or {@link ChunkPayloadCache#UNKNOWN_DIMENSION} to only use the
+     *                    replacements for every dimension
+     * @param sectionMask The sections in {@code data}
+     */
+    public static void obfuscate(int dimension, byte[] data, int sectionMask) {
+        if (!NEIDConfig.AntiXray) {
+            return;
+        }
+        final int[] replacements = replacements(dimension);
+        final int sections = Integer.bitCount(sectionMask & 0xFFFF);
+        if (replacements.length == 0 || sections == 0) {
+            return;
+        }
+        final long[] opaque = opaque();
+        final Scratch scratch = SCRATCH.get();
+        boolean any = false;
+        for (int section = 0; section < sections; section++) {
+            any |= scan(data, section * Constants.BLOCKS_PER_EBS * 2, replacements, opaque, scratch, section);
+        }
+        if (!any) {
+            return;
+        }
+        final int metaOffset = sections * Constants.BLOCKS_PER_EBS * 2;
+        for (int section = 0, sectionY = 0; section < sections; section++, sectionY++) {
+            while ((sectionMask & 1 << sectionY) == 0) {
+                sectionY++;
+            }
+            if (!scratch.anyHidden[section]) {
+                continue;
+            }
+            // Sections missing from the payload are empty or unknown, so they are treated as transparent
+            final long[] below = sectionY > 0 && (sectionMask & 1 << sectionY - 1) != 0
+                    ? scratch.transparent[section - 1]
+                    : null;
+            final long[] above = sectionY < 15 && (sectionMask & 1 << sectionY + 1) != 0
+                    ? scratch.transparent[section + 1]
+                    : null;
+            expose(scratch.transparent[section], below, above, scratch.exposed);
+            final long[] hidden = scratch.hidden[section];
+            final int idOffset = section * Constants.BLOCKS_PER_EBS * 2;
+            for (int word = 0; word < WORDS; word++) {
+                long bits = hidden[word] & ~scratch.exposed[word];
+                while (bits != 0) {
+                    final int index = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    final int pos = idOffset + index * 2;
+                    final int replacement = replacements[(data[pos] & 0xFF) << 8 | data[pos + 1] & 0xFF];
+                    data[pos] = (byte) (replacement >> 8);
+                    data[pos + 1] = (byte) replacement;
+                    data[metaOffset + pos] = 0;
+                    data[metaOffset + pos + 1] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the transparent and hidden bitsets of a section.
+     *
+     * @return Whether the section has any block to hide
+     */
+    private static boolean scan(byte[] data, int offset, int[] replacements, long[] opaque, Scratch scratch,
+            int section) {
+        final long[] transparent = scratch.transparent[section];
+        final long[] hidden = scratch.hidden[section];
+        boolean any = false;
+        for (int word = 0, pos = offset; word < WORDS; word++) {
+            long transparentBits = 0;
+            long hiddenBits = 0;
+            for (int bit = 0; bit < 64; bit++, pos += 2) {
+                final int id = (data[pos] & 0xFF) << 8 | data[pos + 1] & 0xFF;
+                if ((opaque[id >>> 6] & 1L << id) == 0) {
+                    transparentBits |= 1L << bit;
+                } else if (id < replacements.length && replacements[id] != NOT_HIDDEN) {
+                    hiddenBits |= 1L << bit;
+                }
+            }
+            transparent[word] = transparentBits;
+            hidden[word] = hiddenBits;
+            any |= hiddenBits != 0;
+        }
+        scratch.anyHidden[section] = any;
+        return any;
+    }
+
+    /**
+     * Marks the blocks next to a transparent one, and the blocks on the border of the chunk.
+     *
+     * @param below The transparent blocks of the section below, null if everything there is transparent
+     * @param above The transparent blocks of the section above, null if everything there is transparent
+     */
+    static void expose(long[] transparent, long[] below, long[] above, long[] exposed) {
+        for (int word = 0; word < WORDS; word++) {
+            final long t = transparent[word];
+            // Bits shifted across a row or a word only land on the border, which is exposed anyway
+            long e = t | t << 1 | t >>> 1 | t << 16 | t >>> 16 | X_BORDER;
+            if (word > 0) {
+                e |= transparent[word - 1] >>> 48;
+            }
+            if (word < WORDS - 1) {
+                e |= transparent[word + 1] << 48;
+            }
+            switch (word & 3) {
+                case 0:
+                    e |= FIRST_ROW;
+                    break;
+                case 3:
+                    e |= LAST_ROW;
+                    break;
+                default:
+                    break;
+            }
+            if (word >= 4) {
+                e |= transparent[word - 4];
+            } else {
+                e |= below == null ? -1L : below[word + WORDS - 4];
+            }
+            if (word < WORDS - 4) {
+                e |= transparent[word + 4];
+            } else {
+                e |= above == null ? -1L : above[word - WORDS + 4];
+            }
+            exposed[word] = e;
+        }
+    }
+
+    /**
+     * Sends the hidden blocks next to a changed block as they are, since they may have just become visible.
+     *
+     * @param update Called with the position of every such block
+     */
+    public static void revealAround(World world, int x, int y, int z, BlockUpdate update) {
+        if (!NEIDConfig.AntiXray) {
+            return;
+        }
+        final int[] replacements = replacements(world.provider.dimensionId);
+        if (replacements.length == 0) {
+            return;
+        }
+        reveal(world, x - 1, y, z, replacements, update);
+        reveal(world, x + 1, y, z, replacements, update);
+        reveal(world, x, y - 1, z, replacements, update);
+        reveal(world, x, y + 1, z, replacements, update);
+        reveal(world, x, y, z - 1, replacements, update);
+        reveal(world, x, y, z + 1, replacements, update);
+    }
+
+    private static void reveal(World world, int x, int y, int z, int[] replacements, BlockUpdate update) {
+        if (y < 0 || y > 255 || !world.chunkExists(x >> 4, z >> 4)) {
+            return;
+        }
+        final int id = Block.getIdFromBlock(world.getBlock(x, y, z));
+        if (id >= 0 && id < replacements.length && replacements[id] != NOT_HIDDEN) {
+            update.markBlockForUpdate(x, y, z);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BlockUpdate {
+
+        void markBlockForUpdate(int x, int y, int z);
+    }
+
+    /**
+     * @return The replacement of every hidden block id of the dimension, {@link #NOT_HIDDEN} for the others
+     */
+    private static int[] replacements(int dimension) {
+        final String[] config = NEIDConfig.AntiXrayReplacements;
+        if (config != parsedFrom) {
+            REPLACEMENTS.clear();
+            parsedFrom = config;
+        }
+        return REPLACEMENTS.computeIfAbsent(dimension, d -> parse(config, d));
+    }
+
+    /**
+     * Parses the entries for every dimension first, so entries for the dimension itself take precedence.
+     */
+    private static int[] parse(String[] config, int dimension) {
+        final List<int[]> pairs = new ArrayList<>();
+        int length = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (String entry : config) {
+                final int dimensionEnd = entry.indexOf(':');
+                final int replacementStart = entry.lastIndexOf('=');
+                if (dimensionEnd < 0 || replacementStart < dimensionEnd) {
+                    LOGGER.warn("Ignoring anti-xray entry \"{}\", expected <dimension>:<blocks>=<replacement>", entry);
+                    continue;
+                }
+                final String entryDimension = entry.substring(0, dimensionEnd).trim();
+                if (pass == 0 ? !entryDimension.equals("*")
+                        : dimension == ChunkPayloadCache.UNKNOWN_DIMENSION
+                                || !entryDimension.equals(Integer.toString(dimension))) {
+                    continue;
+                }
+                final int replacement = blockId(entry.substring(replacementStart + 1));
+                if (replacement < 0) {
+                    continue;
+                }
+                for (String block : entry.substring(dimensionEnd + 1, replacementStart).split(",")) {
+                    final int id = blockId(block);
+                    if (id >= 0) {
+                        pairs.add(new int[] { id, replacement });
+                        length = Math.max(length, id + 1);
+                    }
+                }
+            }
+        }
+        final int[] replacements = new int[length];
+        Arrays.fill(replacements, NOT_HIDDEN);
+        for (int[] pair : pairs) {
+            replacements[pair[0]] = pair[1];
+        }
+        return replacements;
+    }
+
+    /**
+     * @param name A block name like minecraft:diamond_ore, or a numeric block id
+     * @return The id of the block, -1 if there is no such block
+     */
+    private static int blockId(String name) {
+        name = name.trim();
+        try {
+            final int id = Integer.parseInt(name);
+            if (id >= 0 && id <= Short.MAX_VALUE) {
+                return id;
+            }
+        } catch (NumberFormatException e) {
+            final Block block = Block.getBlockFromName(name);
+            if (block != null) {
+                return Block.getIdFromBlock(block);
+            }
+        }
+        LOGGER.warn("Ignoring unknown block \"{}\" in the anti-xray replacements", name);
+        return -1;
+    }
+
+    private static long[] opaque() {
+        long[] bits = opaque;
+        if (bits == null) {
+            bits = new long[65536 / 64];
+            for (int id = 0; id <= Short.MAX_VALUE; id++) {
+                final Block block = Block.getBlockById(id);
+                if (block != null && block.isOpaqueCube()) {
+                    bits[id >>> 6] |= 1L << id;
+                }
+            }
+            // Unregistered ids resolve to air, which is transparent
+            opaque = bits;
+        }
+        return bits;
+    }
+
+    private static final class Scratch {
+
+        final long[][] transparent = new long[16][WORDS];
+        final long[][] hidden = new long[16][WORDS];
+        final boolean[] anyHidden = new boolean[16];
+        final long[] exposed = new long[WORDS];
+    }
+}
@@ -0,0 +1,46 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counters for the block update coalescing done in PlayerInstance, logged when the server stops.
+ */
+public final class BlockUpdateStats {
+
+    private static final Logger LOGGER = LogManager.getLogger("NEID");
+
+    /**
+     * Block changes flagged again for a position already waiting to be sent in the same tick.
+     */
+    public static final AtomicLong DUPLICATE_CHANGES = new AtomicLong();
+
+    /**
+     * Vanilla packets replaced by a smaller packet or message, and the bytes that saved.
+     */
+    public static final AtomicLong PACKETS_REPLACED = new AtomicLong();
+    public static final AtomicLong BYTES_SAVED = new AtomicLong();
+
+    private BlockUpdateStats() {}
+
+    public static void replaced(int vanillaSize, int size) {
+        PACKETS_REPLACED.incrementAndGet();
+        BYTES_SAVED.addAndGet(vanillaSize - size);
+    }
+
+    public static void logStats() {
+        LOGGER.info(
+                "Block updates: {} duplicate changes coalesced, {} packets replaced by smaller ones, about {} bytes saved",
+                DUPLICATE_CHANGES.get(),
+                PACKETS_REPLACED.get(),
+                BYTES_SAVED.get());
+    }
+
+    public static void clear() {
+        DUPLICATE_CHANGES.set(0);
+        PACKETS_REPLACED.set(0);
+        BYTES_SAVED.set(0);
+    }
+}
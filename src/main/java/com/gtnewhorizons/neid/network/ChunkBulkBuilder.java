@@ -0,0 +1,101 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.world.chunk.Chunk;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Extracts the chunks of a S26PacketMapChunkBulk in parallel. The server thread waits for every chunk to be extracted,
+ * so the chunks are not modified while the workers read them.
+ */
+public final class ChunkBulkBuilder {
+
+    /**
+     * Buffers replacing the static one S21PacketChunkData.func_149269_a extracts into, which would be shared between
+     * the workers. Extraction copies the payload out of the buffer before it returns, so a buffer is only borrowed for
+     * the duration of one call. Buffers borrowed while the pool is empty are allocated, and dropped when they are
+     * returned to a full pool.
+     */
+    private static final BlockingQueue<byte[]> EXTRACTION_BUFFERS = new ArrayBlockingQueue<>(
+            Runtime.getRuntime().availableProcessors() + 1);
+
+    /**
+     * The buffer borrowed by the extraction running on this thread.
+     */
+    private static final ThreadLocal<byte[]> BORROWED = new ThreadLocal<>();
+
+    /**
+     * Sections to extract from the chunks of bulk packets built by {@link #withSectionMask}.
+     */
+    private static final ThreadLocal<Integer> SECTION_MASK = new ThreadLocal<>();
+
+    private ChunkBulkBuilder() {}
+
+    /**
+     * Builds a S26PacketMapChunkBulk that only carries the given sections of its chunks, instead of all of them.
+     */
+    public static <T> T withSectionMask(int sectionMask, Supplier<T> packet) {
+        SECTION_MASK.set(sectionMask);
+        try {
+            return packet.get();
+        } finally {
+            SECTION_MASK.remove();
+        }
+    }
+
+    /**
+     * Borrows a buffer for the extraction running on this thread, until {@link #releaseExtractionBuffer()}. Chunks of a
+     * bulk packet are extracted in parallel, so each extraction needs its own buffer instead of the shared one of
+     * S21PacketChunkData.
+     */
+    public static byte[] extractionBuffer() {
+        byte[] buffer = BORROWED.get();
+        if (buffer == null) {
+            buffer = EXTRACTION_BUFFERS.poll();
+            if (buffer == null) {
+                buffer = new byte[Constants.BYTES_PER_CHUNK];
+            }
+            BORROWED.set(buffer);
+        }
+        return buffer;
+    }
+
+    public static void releaseExtractionBuffer() {
+        final byte[] buffer = BORROWED.get();
+        if (buffer != null) {
+            BORROWED.remove();
+            EXTRACTION_BUFFERS.offer(buffer);
+        }
+    }
+
+    public static S21PacketChunkData.Extracted[] extract(List<Chunk> chunks, boolean fullChunk, int sectionMask) {
+        final Integer override = SECTION_MASK.get();
+        final int mask = override == null ? sectionMask : sectionMask & override;
+        final S21PacketChunkData.Extracted[] extracted = new S21PacketChunkData.Extracted[chunks.size()];
+        forEachChunk(
+                extracted.length,
+                i -> extracted[i] = S21PacketChunkData.func_149269_a(chunks.get(i), fullChunk, mask));
+        return extracted;
+    }
+
+    /**
+     * Runs the action for the index of every chunk of a bulk packet, on the common ForkJoin pool unless
+     * {@link NEIDConfig#ParallelChunkBulkBuild} is off, and returns once every chunk is done.
+     */
+    public static void forEachChunk(int count, IntConsumer action) {
+        IntStream range = IntStream.range(0, count);
+        if (NEIDConfig.ParallelChunkBulkBuild) {
+            range = range.parallel();
+        }
+        range.forEach(action);
+    }
+}
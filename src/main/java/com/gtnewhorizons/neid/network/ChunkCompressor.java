@@ -0,0 +1,98 @@
+package com.gtnewhorizons.neid.network;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Background pool compressing chunk packets between their construction on the server thread and their serialization
+ * on the network thread. The packet keeps its extracted data as a snapshot, so the compression only needs that array.
+ *
+ * The number of queued compressions is bounded. When the limit is reached {@link #submit} returns null and the packet
+ * is compressed when it is written, exactly as without the pool.
+ */
+public final class ChunkCompressor {
+
+    private ChunkCompressor() {}
+
+    /**
+     * @return The pending payload, or null if the pool is disabled or full.
+     */
+    public static Future<ChunkPayload> submit(Callable<ChunkPayload> task) {
+        if (NEIDConfig.ChunkCompressionThreads <= 0 || !Pool.PERMITS.tryAcquire()) {
+            return null;
+        }
+        final FutureTask<ChunkPayload> future = new FutureTask<ChunkPayload>(task) {
+
+            @Override
+            protected void done() {
+                Pool.PERMITS.release();
+            }
+        };
+        Pool.EXECUTOR.execute(future);
+        return future;
+    }
+
+    /**
+     * Waits for a payload returned by {@link #submit}. This only blocks if the packet is written before the pool got to
+     * it.
+     */
+    public static ChunkPayload await(Future<ChunkPayload> future) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to compress chunk data", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Created on first use, after the config has been loaded.
+     */
+    private static final class Pool {
+
+        private static final Semaphore PERMITS = new Semaphore(NEIDConfig.ChunkCompressionQueueLimit);
+
+        private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+                NEIDConfig.ChunkCompressionThreads,
+                NEIDConfig.ChunkCompressionThreads,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "NEID Chunk Compressor #" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        static {
+            EXECUTOR.allowCoreThreadTimeOut(true);
+        }
+    }
+}
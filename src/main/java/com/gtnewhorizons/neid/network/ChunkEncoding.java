@@ -0,0 +1,282 @@
+package com.gtnewhorizons.neid.network;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Optional transformations applied to the uncompressed NEID chunk payload before it is deflated. The flags are carried
+ * in the extended block (MSB) mask of S21PacketChunkData and S26PacketMapChunkBulk. NEID never sends an MSB array,
+ * since block ids are sent as full 16-bit values, so that mask is free to describe how the payload was encoded.
+ *
+ * A flag is only used towards a connection once the client has accepted it in the handshake, see {@link NEIDNetwork}.
+ */
+public final class ChunkEncoding {
+
+    /**
+     * Plain NEID layout: big-endian 16-bit ids, big-endian 16-bit metadata, blocklight, skylight, biomes.
+     */
+    public static final int LEGACY = 0;
+
+    /**
+     * The 16-bit id and metadata arrays are sent as one plane holding every high byte followed by one plane holding
+     * every low byte. On vanilla terrain high bytes are almost always zero, so the first plane deflates to next to
+     * nothing. Extended ids and metadata scatter non-zero high bytes and the planes deflate worse than the legacy layout.
+     */
+    public static final int BYTE_PLANES = 1;
+
+    /**
+     * Not a payload encoding: the client understands {@link com.gtnewhorizons.neid.network.message.MessageSectionDelta}
+     * and can receive it instead of S21PacketChunkData and S22PacketMultiBlockChange block updates.
+     */
+    public static final int SECTION_DELTA = 1 << 1;
+
+    /**
+     * The client keeps a {@link SectionCache}. On a payload it marks that the payload went through the cache, and that
+     * sections the client already has may be replaced by markers.
+     */
+    public static final int SECTION_CACHE = 1 << 2;
+
+    /**
+     * Light planes holding a single value, like the sky light of open air or the block light of caves, are sent as that
+     * value. The light of the payload starts with a header: one byte telling whether there is sky light, then the
+     * uniform block light planes and, with sky light, the uniform sky light planes as 16-bit masks by section index.
+     * Every plane follows in the legacy order, as one byte if uniform and as 2048 bytes otherwise.
+     */
+    public static final int UNIFORM_LIGHT = 1 << 3;
+
+    /**
+     * Size of one light plane of a section.
+     */
+    private static final int LIGHT_PLANE = 2048;
+
+    /**
+     * Every flag this build is able to decode.
+     */
+    public static final int SUPPORTED = BYTE_PLANES | SECTION_DELTA | SECTION_CACHE | UNIFORM_LIGHT;
+
+    /**
+     * The flags that describe a chunk payload, as opposed to capabilities of the connection.
+     */
+    public static final int PAYLOAD = BYTE_PLANES | UNIFORM_LIGHT;
+
+    private ChunkEncoding() {}
+
+    /**
+     * @return The encodings enabled in the local config, offered by a server and accepted by a client.
+     */
+    public static int enabled() {
+        int encoding = LEGACY;
+        if (NEIDConfig.ChunkDataBytePlanes) {
+            encoding |= BYTE_PLANES;
+        }
+        if (NEIDConfig.SectionDeltaUpdates) {
+            encoding |= SECTION_DELTA;
+        }
+        if (NEIDConfig.SectionCacheSize > 0) {
+            encoding |= SECTION_CACHE;
+        }
+        if (NEIDConfig.ChunkDataUniformLight) {
+            encoding |= UNIFORM_LIGHT;
+        }
+        return encoding;
+    }
+
+    /**
+     * @return The payload flags of {@link #enabled()}, used for payloads encoded before the receiving connection is
+     *         known.
+     */
+    public static int enabledPayload() {
+        return enabled() & PAYLOAD;
+    }
+
+    /**
+     * Number of leading payload bytes taken up by the 16-bit id and metadata arrays of the sent sections.
+     */
+    public static int blockDataLength(int sections) {
+        return sections * Constants.BLOCKS_PER_EBS * 4;
+    }
+
+    /**
+     * Encodes bytes {@code from} to {@code to} of the encoded form of a legacy payload into {@code out} at
+     * {@code outPos}. Encoding a payload slice by slice lets it be streamed into a deflater without an encoded copy of
+     * the whole payload.
+     */
+    public static void encode(byte[] data, int sections, int encoding, int from, int to, byte[] out, int outPos) {
+        int pos = from;
+        if ((encoding & BYTE_PLANES) != 0) {
+            final int shorts = blockDataLength(sections) >> 1;
+            final int highEnd = Math.min(to, shorts);
+            while (pos < highEnd) {
+                out[outPos++] = data[pos++ << 1];
+            }
+            final int lowEnd = Math.min(to, shorts << 1);
+            while (pos < lowEnd) {
+                out[outPos++] = data[((pos++ - shorts) << 1) + 1];
+            }
+        }
+        if (pos < to) {
+            System.arraycopy(data, pos, out, outPos, to - pos);
+        }
+    }
+
+    /**
+     * Writes the {@link #UNIFORM_LIGHT} form of the light planes of a legacy payload into {@code out}.
+     *
+     * @param offset      Start of the light planes in {@code data}
+     * @param lightLength Size of the light planes, without the biomes following them
+     * @return The end of the written light in {@code out}
+     */
+    public static int encodeLight(byte[] data, int offset, int lightLength, int sections, byte[] out, int outPos) {
+        final boolean sky = sections > 0 && lightLength == sections * LIGHT_PLANE * 2;
+        final int header = outPos;
+        out[outPos++] = (byte) (sky ? 1 : 0);
+        outPos += sky ? 4 : 2;
+        int blockMask = 0;
+        int skyMask = 0;
+        for (int plane = 0; plane < (sky ? sections * 2 : sections); plane++) {
+            final int start = offset + plane * LIGHT_PLANE;
+            if (isUniform(data, start)) {
+                if (plane < sections) {
+                    blockMask |= 1 << plane;
+                } else {
+                    skyMask |= 1 << (plane - sections);
+                }
+                out[outPos++] = data[start];
+            } else {
+                System.arraycopy(data, start, out, outPos, LIGHT_PLANE);
+                outPos += LIGHT_PLANE;
+            }
+        }
+        out[header + 1] = (byte) (blockMask >> 8);
+        out[header + 2] = (byte) blockMask;
+        if (sky) {
+            out[header + 3] = (byte) (skyMask >> 8);
+            out[header + 4] = (byte) skyMask;
+        }
+        return outPos;
+    }
+
+    private static boolean isUniform(byte[] data, int start) {
+        final byte value = data[start];
+        for (int i = start + 1; i < start + LIGHT_PLANE; i++) {
+            if (data[i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param offset Start of light encoded with {@link #UNIFORM_LIGHT}
+     * @return The size of the encoded light
+     */
+    public static int encodedLightLength(byte[] data, int offset, int sections) {
+        final boolean sky = data[offset] != 0;
+        final int blockMask = (data[offset + 1] & 0xFF) << 8 | data[offset + 2] & 0xFF;
+        int length = 3 + planesLength(blockMask, sections);
+        if (sky) {
+            final int skyMask = (data[offset + 3] & 0xFF) << 8 | data[offset + 4] & 0xFF;
+            length += 2 + planesLength(skyMask, sections);
+        }
+        return length;
+    }
+
+    private static int planesLength(int uniformMask, int sections) {
+        final int uniform = Integer.bitCount(uniformMask);
+        return uniform + (sections - uniform) * LIGHT_PLANE;
+    }
+
+    /**
+     * @param length Size of the payload in the given encoding
+     * @return The size of the payload once decoded
+     */
+    public static int decodedLength(byte[] data, int length, int sections, int encoding) {
+        if ((encoding & UNIFORM_LIGHT) == 0 || sections == 0) {
+            return length;
+        }
+        final int blockData = blockDataLength(sections);
+        final int biomes = length - blockData - encodedLightLength(data, blockData, sections);
+        return blockData + sections * LIGHT_PLANE * (data[blockData] != 0 ? 2 : 1) + biomes;
+    }
+
+    /**
+     * @param rawLength Size of the payload in the legacy layout, with sky light if {@code data} has it
+     * @return The size of the payload starting at {@code offset} in the given encoding
+     */
+    public static int encodedLength(byte[] data, int offset, int rawLength, int sections, int encoding) {
+        if ((encoding & UNIFORM_LIGHT) == 0 || sections == 0) {
+            return rawLength;
+        }
+        final int blockData = blockDataLength(sections);
+        final int light = encodedLightLength(data, offset + blockData, sections);
+        final int rawLight = sections * LIGHT_PLANE * (data[offset + blockData] != 0 ? 2 : 1);
+        return rawLength - rawLight + light;
+    }
+
+    /**
+     * Turns an encoded payload back into the legacy layout expected by Chunk.fillChunk. {@code data} must be large
+     * enough for the legacy layout, which it is when sized by the section mask like vanilla does.
+     */
+    public static byte[] decode(byte[] data, int sections, int encoding) throws IOException {
+        if ((encoding & ~SUPPORTED) != 0) {
+            throw new IOException("Unsupported NEID chunk encoding 0x" + Integer.toHexString(encoding));
+        }
+        final int blockData = blockDataLength(sections);
+        if ((encoding & BYTE_PLANES) != 0) {
+            final byte[] planes = new byte[blockData];
+            System.arraycopy(data, 0, planes, 0, blockData);
+            joinPlanes(planes, 0, data, 0, blockData >> 1);
+        }
+        if ((encoding & UNIFORM_LIGHT) != 0 && sections > 0) {
+            expandLight(data, blockData, sections);
+        }
+        return data;
+    }
+
+    /**
+     * Expands {@link #UNIFORM_LIGHT} light in place. Planes only move towards the end, so they are expanded last to
+     * first, after the biomes.
+     */
+    private static void expandLight(byte[] data, int offset, int sections) throws IOException {
+        final boolean sky = data[offset] != 0;
+        final int blockMask = (data[offset + 1] & 0xFF) << 8 | data[offset + 2] & 0xFF;
+        final int skyMask = sky ? (data[offset + 3] & 0xFF) << 8 | data[offset + 4] & 0xFF : 0;
+        final int planes = sky ? sections * 2 : sections;
+        final int uniformMask = blockMask | skyMask << sections;
+        final int[] sources = new int[planes];
+        int pos = offset + (sky ? 5 : 3);
+        for (int plane = 0; plane < planes; plane++) {
+            sources[plane] = pos;
+            pos += (uniformMask >>> plane & 1) != 0 ? 1 : LIGHT_PLANE;
+        }
+        final int lightEnd = offset + planes * LIGHT_PLANE;
+        // Biomes are only sent with full chunks, which vanilla sizes as sections * 20480 + 256
+        final int biomes = data.length % LIGHT_PLANE;
+        if (lightEnd + biomes > data.length || pos + biomes > data.length) {
+            throw new IOException("Truncated NEID chunk light data");
+        }
+        System.arraycopy(data, pos, data, lightEnd, biomes);
+        for (int plane = planes - 1; plane >= 0; plane--) {
+            final int target = offset + plane * LIGHT_PLANE;
+            if ((uniformMask >>> plane & 1) != 0) {
+                Arrays.fill(data, target, target + LIGHT_PLANE, data[sources[plane]]);
+            } else {
+                System.arraycopy(data, sources[plane], data, target, LIGHT_PLANE);
+            }
+        }
+    }
+
+    /**
+     * Joins a plane of high bytes followed by a plane of low bytes back into big-endian shorts.
+     */
+    static void joinPlanes(byte[] src, int srcPos, byte[] dst, int dstPos, int shorts) {
+        final int low = srcPos + shorts;
+        for (int i = 0; i < shorts; i++) {
+            dst[dstPos + (i << 1)] = src[srcPos + i];
+            dst[dstPos + (i << 1) + 1] = src[low + i];
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.gtnewhorizons.neid.network;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+/**
+ * The payloads of a S21PacketChunkData, shared by the connections it is written to, see
+ * {@link ChunkPacketWriter#writeChunkPacket}. The packet is written by the network threads of several connections at
+ * once, so the payloads are only published through volatile fields.
+ */
+public final class ChunkPacketPayloads {
+
+    final int dimension;
+
+    /**
+     * Whether the data of the packet stays as it was extracted.
+     */
+    private final boolean snapshot;
+
+    /**
+     * Whether the data of the packet may be changed until it is written, and is copied to be compressed ahead of time.
+     */
+    private final boolean checked;
+
+    /**
+     * The data the payloads of a {@link #checked} packet describe, null until it is submitted.
+     */
+    private volatile byte[] copy;
+
+    /**
+     * Payload compressed by {@link ChunkCompressor} with {@link #pendingEncoding}. Set once, and kept once done so that
+     * every connection with that encoding gets it from the future.
+     */
+    private volatile Future<ChunkPayload> pending;
+
+    /**
+     * Written before {@link #pending}, which publishes it.
+     */
+    private int pendingEncoding;
+
+    /**
+     * The last payload a connection encoded itself, reused by the following connections with the same encoding.
+     */
+    private volatile ChunkPayload payload;
+
+    private volatile long[] sectionHashes;
+
+    private ChunkPacketPayloads(int dimension, boolean snapshot, boolean checked) {
+        this.dimension = dimension;
+        this.snapshot = snapshot;
+        this.checked = checked;
+    }
+
+    /**
+     * For packets whose data is never changed after their construction.
+     */
+    public static ChunkPacketPayloads snapshot(int dimension) {
+        return new ChunkPacketPayloads(dimension, true, false);
+    }
+
+    /**
+     * For packets whose data may still be changed before they are written, like by Bukkit plugins on Thermos. The data
+     * is copied when submitted and compressed from the copy. Its payloads are only shared by the connections the packet
+     * still holds the same data for when it is written to them, the others encode the data as it is.
+     */
+    public static ChunkPacketPayloads checked(int dimension) {
+        return new ChunkPacketPayloads(dimension, false, true);
+    }
+
+    /**
+     * For packets whose data is unknown. Every connection encodes the data as it is when the packet is written to it.
+     */
+    public static ChunkPacketPayloads mutable(int dimension) {
+        return new ChunkPacketPayloads(dimension, false, false);
+    }
+
+    /**
+     * Starts compressing the payload with the enabled payload encoding in the background, unless no remote player uses
+     * that encoding.
+     */
+    public void submit(byte[] raw, int sections) {
+        final int encoding = ChunkEncoding.enabledPayload();
+        if (!(this.snapshot || this.checked) || !NEIDNetwork.hasRemotePlayers(encoding)) {
+            return;
+        }
+        final int dimension = this.dimension;
+        final byte[] data = this.checked ? raw.clone() : raw;
+        if (this.checked) {
+            this.copy = data;
+        }
+        this.pendingEncoding = encoding;
+        this.pending = ChunkCompressor.submit(
+                () -> ChunkPayloadCache
+                        .encode(dimension, data, data.length, sections, encoding, ChunkPayload.CHUNK_LEVEL));
+    }
+
+    /**
+     * @param raw The data the packet holds now, null once Forge's lazy deflate released it
+     * @return Whether the payloads and section hashes shared by the connections are those of this data, so that the
+     *         connection may use and keep them
+     */
+    boolean describes(byte[] raw) {
+        if (this.snapshot) {
+            return true;
+        }
+        final byte[] copy = this.copy;
+        return copy != null && raw != null && Arrays.equals(raw, copy);
+    }
+
+    /**
+     * Only for data this {@link #describes}.
+     *
+     * @return The payload already encoded with this encoding, or null. Only waits for the background compression if
+     *         its payload has this encoding.
+     */
+    ChunkPayload encoded(int encoding) throws IOException {
+        final Future<ChunkPayload> pending = this.pending;
+        if (pending != null && encoding == this.pendingEncoding) {
+            return ChunkCompressor.await(pending);
+        }
+        final ChunkPayload payload = this.payload;
+        return payload != null && payload.encoding == encoding ? payload : null;
+    }
+
+    /**
+     * Only for data this {@link #describes}.
+     */
+    void setEncoded(ChunkPayload payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Only for data this {@link #describes}. Computed by the first connection using a {@link SectionCache}, and shared
+     * by the others.
+     */
+    long[] sectionHashes(byte[] raw, int sections) {
+        long[] hashes = this.sectionHashes;
+        if (hashes == null) {
+            hashes = SectionCache.hashes(raw, sections);
+            this.sectionHashes = hashes;
+        }
+        return hashes;
+    }
+}
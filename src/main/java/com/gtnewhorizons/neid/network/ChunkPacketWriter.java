@@ -0,0 +1,87 @@
+package com.gtnewhorizons.neid.network;
+
+import java.io.IOException;
+
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Serializes chunk packets whose payload was encoded for a specific connection. The layout is the vanilla one, with
+ * the {@link ChunkEncoding} flags written in place of the extended block mask.
+ */
+public final class ChunkPacketWriter {
+
+    private ChunkPacketWriter() {}
+
+    /**
+     * Writes a S21PacketChunkData for the connection being serialized, with the payload encoding it accepted and
+     * through its {@link SectionCache}.
+     *
+     * @param raw      The extracted data of the packet, null once Forge's lazy deflate released it
+     * @param payloads The payloads shared by the connections, or null if the packet wasn't built from a chunk
+     * @return False if the connection uses the legacy layout without a section cache, the packet is then left to
+     *         Forge's lazy deflate
+     */
+    public static boolean writeChunkPacket(PacketBuffer buf, int x, int z, boolean fullChunk, int sectionMask,
+            byte[] raw, ChunkPacketPayloads payloads) throws IOException {
+        if (payloads == null) {
+            payloads = ChunkPacketPayloads.mutable(ChunkPayloadCache.UNKNOWN_DIMENSION);
+        }
+        final int encoding = NEIDNetwork.currentEncoding();
+        final SectionCache sectionCache = raw == null ? null : NEIDNetwork.currentSectionCache();
+        final int sections = Integer.bitCount(sectionMask & 0xFFFF);
+        final boolean shared = payloads.describes(raw);
+        final byte[] elided = sectionCache == null ? null
+                : sectionCache.elide(
+                        raw,
+                        sections,
+                        shared ? payloads.sectionHashes(raw, sections) : SectionCache.hashes(raw, sections));
+        ChunkPayload payload;
+        if (elided != null) {
+            payload = ChunkPayload.encode(elided, elided.length, sections, encoding, ChunkPayload.CHUNK_LEVEL);
+        } else {
+            payload = shared ? payloads.encoded(encoding) : null;
+            if (payload == null) {
+                if ((encoding == ChunkEncoding.LEGACY && sectionCache == null) || raw == null) {
+                    return false;
+                }
+                payload = ChunkPayloadCache
+                        .encode(payloads.dimension, raw, raw.length, sections, encoding, ChunkPayload.CHUNK_LEVEL);
+                if (shared) {
+                    payloads.setEncoded(payload);
+                }
+            }
+        }
+        if (sectionCache != null) {
+            payload = payload.withFlags(ChunkEncoding.SECTION_CACHE);
+        }
+        writeChunkData(buf, x, z, fullChunk, sectionMask, payload);
+        return true;
+    }
+
+    public static void writeChunkData(PacketBuffer buf, int x, int z, boolean fullChunk, int sectionMask,
+            ChunkPayload payload) {
+        buf.ensureWritable(17 + payload.length);
+        buf.writeInt(x);
+        buf.writeInt(z);
+        buf.writeBoolean(fullChunk);
+        buf.writeShort((short) (sectionMask & 0xFFFF));
+        buf.writeShort((short) (payload.encoding & 0xFFFF));
+        buf.writeInt(payload.length);
+        buf.writeBytes(payload.data, 0, payload.length);
+    }
+
+    public static void writeMapChunkBulk(PacketBuffer buf, int[] xs, int[] zs, int[] sectionMasks, boolean hasSky,
+            ChunkPayload payload) {
+        buf.ensureWritable(7 + payload.length + xs.length * 12);
+        buf.writeShort(xs.length);
+        buf.writeInt(payload.length);
+        buf.writeBoolean(hasSky);
+        buf.writeBytes(payload.data, 0, payload.length);
+        for (int i = 0; i < xs.length; ++i) {
+            buf.writeInt(xs[i]);
+            buf.writeInt(zs[i]);
+            buf.writeShort((short) (sectionMasks[i] & 0xFFFF));
+            buf.writeShort((short) (payload.encoding & 0xFFFF));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.gtnewhorizons.neid.network;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.gtnewhorizons.neid.Constants;
+
+/**
+ * A deflated chunk payload together with the {@link ChunkEncoding} flags it was encoded with.
+ */
+public final class ChunkPayload {
+
+    /**
+     * Compression level used by Forge for S21PacketChunkData.
+     */
+    public static final int CHUNK_LEVEL = 7;
+
+    /**
+     * Compression level used by Forge for S26PacketMapChunkBulk.
+     */
+    public static final int BULK_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    public final int encoding;
+    public final byte[] data;
+    public final int length;
+
+    public ChunkPayload(int encoding, byte[] data, int length) {
+        this.encoding = encoding;
+        this.data = data;
+        this.length = length;
+    }
+
+    /**
+     * @return The same payload, with connection flags that don't change its contents added to its encoding
+     */
+    public ChunkPayload withFlags(int flags) {
+        return new ChunkPayload(this.encoding | flags, this.data, this.length);
+    }
+
+    /**
+     * Encodes a legacy payload with the given flags and deflates the result.
+     */
+    public static ChunkPayload encode(byte[] raw, int rawLength, int sections, int encoding, int level) {
+        final PayloadDeflater deflater = PayloadDeflater.begin(level);
+        deflater.write(raw, rawLength, sections, encoding);
+        return deflater.finish(encoding);
+    }
+
+    /**
+     * Encodes the legacy payloads of the chunks of a S26PacketMapChunkBulk with the given flags and deflates them as
+     * one stream.
+     */
+    public static ChunkPayload encodeBulk(byte[][] chunks, int[] sectionMasks, int encoding, int level) {
+        final PayloadDeflater deflater = PayloadDeflater.begin(level);
+        for (int i = 0; i < chunks.length; i++) {
+            deflater.write(chunks[i], chunks[i].length, Integer.bitCount(sectionMasks[i] & 0xFFFF), encoding);
+        }
+        return deflater.finish(encoding);
+    }
+
+    /**
+     * Re-encodes an already deflated payload for a connection that did not accept its encoding.
+     */
+    public static ChunkPayload transcode(byte[] deflated, int length, int sections, boolean fullChunk,
+            int fromEncoding, int toEncoding, int level) throws IOException {
+        final byte[] raw = new byte[sections * Constants.BYTES_PER_EBS + (fullChunk ? 256 : 0)];
+        final int rawLength = ChunkEncoding
+                .decodedLength(raw, inflate(deflated, length, raw), sections, fromEncoding);
+        return encode(ChunkEncoding.decode(raw, sections, fromEncoding), rawLength, sections, toEncoding, level);
+    }
+
+    public static int inflate(byte[] deflated, int length, byte[] out) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated, 0, length);
+            return inflater.inflate(out);
+        } catch (DataFormatException e) {
+            throw new IOException("Bad compressed data format", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
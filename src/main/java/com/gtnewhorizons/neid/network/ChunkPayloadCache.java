@@ -0,0 +1,167 @@
+package com.gtnewhorizons.neid.network;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Cache of compressed chunk payloads keyed by the contents of the uncompressed payload. The payload does not contain
+ * the chunk coordinates, so empty, void, skyblock and superflat chunks all deflate to the same bytes and only need to be
+ * compressed once.
+ *
+ * Only payloads that compress well are kept. Regular terrain is rarely identical and would just push those out.
+ */
+public final class ChunkPayloadCache {
+
+    private static final Logger LOGGER = LogManager.getLogger("NEID");
+
+    /**
+     * Dimension reported for packets that do not know which world they were built from.
+     */
+    public static final int UNKNOWN_DIMENSION = Integer.MIN_VALUE;
+
+    private static final int MAX_CACHED_LENGTH = 16384;
+
+    private static final Map<Key, ChunkPayload> CACHE = new LinkedHashMap<Key, ChunkPayload>(16, 0.75F, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ChunkPayload> eldest) {
+            return size() > NEIDConfig.ChunkPayloadCacheSize;
+        }
+    };
+
+    private static final Map<Integer, Stats> STATS = new ConcurrentHashMap<>();
+
+    private ChunkPayloadCache() {}
+
+    /**
+     * Same as {@link ChunkPayload#encode}, reusing the compressed payload of an identical chunk if one is cached.
+     */
+    public static ChunkPayload encode(int dimension, byte[] raw, int rawLength, int sections, int encoding,
+            int level) {
+        if (NEIDConfig.ChunkPayloadCacheSize <= 0) {
+            return ChunkPayload.encode(raw, rawLength, sections, encoding, level);
+        }
+        final Key key = new Key(raw, rawLength, sections, encoding, level);
+        ChunkPayload payload;
+        synchronized (CACHE) {
+            payload = CACHE.get(key);
+        }
+        STATS.computeIfAbsent(dimension, d -> new Stats()).record(payload != null);
+        if (payload == null) {
+            payload = ChunkPayload.encode(raw, rawLength, sections, encoding, level);
+            if (payload.length <= MAX_CACHED_LENGTH) {
+                synchronized (CACHE) {
+                    CACHE.put(key, payload);
+                }
+            }
+        }
+        return payload;
+    }
+
+    public static void logStats() {
+        for (Map.Entry<Integer, Stats> entry : STATS.entrySet()) {
+            final long lookups = entry.getValue().lookups.get();
+            final long hits = entry.getValue().hits.get();
+            LOGGER.info(
+                    "Chunk payload cache, dimension {}: {} of {} chunk packets reused a cached payload ({}%)",
+                    entry.getKey() == UNKNOWN_DIMENSION ? "unknown" : entry.getKey(),
+                    hits,
+                    lookups,
+                    lookups == 0 ? 0 : hits * 100 / lookups);
+        }
+    }
+
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+        STATS.clear();
+    }
+
+    private static final class Stats {
+
+        private final AtomicLong lookups = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+
+        private void record(boolean hit) {
+            lookups.incrementAndGet();
+            if (hit) {
+                hits.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Two independent 64-bit hashes of the payload, so that a collision between different chunks is not a concern.
+     */
+    private static final class Key {
+
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+        private final long hash1;
+        private final long hash2;
+        private final int length;
+        private final int sections;
+        private final int encoding;
+        private final int level;
+
+        private Key(byte[] data, int length, int sections, int encoding, int level) {
+            final ByteBuffer buffer = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+            long h1 = PRIME_1 ^ length;
+            long h2 = PRIME_2 ^ length;
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                final long v = buffer.getLong(i);
+                h1 = Long.rotateLeft(h1 ^ v * PRIME_2, 31) * PRIME_1;
+                h2 = Long.rotateLeft(h2 + v * PRIME_3, 27) * PRIME_2;
+            }
+            for (; i < length; i++) {
+                final long v = data[i] & 0xFF;
+                h1 = Long.rotateLeft(h1 ^ v * PRIME_2, 11) * PRIME_1;
+                h2 = Long.rotateLeft(h2 + v * PRIME_3, 13) * PRIME_2;
+            }
+            this.hash1 = mix(h1);
+            this.hash2 = mix(h2);
+            this.length = length;
+            this.sections = sections;
+            this.encoding = encoding;
+            this.level = level;
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= PRIME_2;
+            h ^= h >>> 29;
+            h *= PRIME_3;
+            return h ^ (h >>> 32);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return hash1 == key.hash1 && hash2 == key.hash2
+                    && length == key.length
+                    && sections == key.sections
+                    && encoding == key.encoding
+                    && level == key.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.NetworkManager;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.network.message.MessageAcceptEncodings;
+import com.gtnewhorizons.neid.network.message.MessageOfferEncodings;
+import com.gtnewhorizons.neid.network.message.MessageSectionDelta;
+
+import cpw.mods.fml.common.FMLCommonHandler;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.PlayerEvent;
+import cpw.mods.fml.common.network.NetworkRegistry;
+import cpw.mods.fml.common.network.simpleimpl.SimpleNetworkWrapper;
+import cpw.mods.fml.relauncher.Side;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * NEID's own network channel. It is used to agree on the optional chunk data encodings with every client: the server
+ * offers its enabled {@link ChunkEncoding} flags when a player logs in, and the client answers with the subset it
+ * accepts. Until the answer arrives the connection keeps receiving the legacy layout.
+ *
+ * Chunk packets are often shared between every player watching a chunk, so the encoding is picked when the packet is
+ * serialized for a specific connection, see {@link #currentEncoding()}.
+ */
+public final class NEIDNetwork {
+
+    public static final SimpleNetworkWrapper CHANNEL = NetworkRegistry.INSTANCE.newSimpleChannel("neid");
+
+    private static final AttributeKey<Integer> ENCODING = new AttributeKey<>("neid:encoding");
+
+    private static final AttributeKey<SectionCache> SECTION_CACHE = new AttributeKey<>("neid:section_cache");
+
+    /**
+     * The channel whose outgoing packet is being serialized on this thread, set by MixinMessageSerializer.
+     */
+    private static final ThreadLocal<Channel> WRITING = new ThreadLocal<>();
+
+    /**
+     * Logged in players by kind of connection, see {@link #localOnly()}.
+     */
+    private static final AtomicInteger LOCAL_PLAYERS = new AtomicInteger();
+    private static final AtomicInteger REMOTE_PLAYERS = new AtomicInteger();
+
+    /**
+     * Logged in remote players by the payload encoding of their connection, see {@link #hasRemotePlayers(int)}.
+     */
+    private static final AtomicIntegerArray REMOTE_PLAYERS_BY_ENCODING = new AtomicIntegerArray(
+            ChunkEncoding.PAYLOAD + 1);
+
+    private NEIDNetwork() {}
+
+    public static void init() {
+        CHANNEL.registerMessage(MessageOfferEncodings.Handler.class, MessageOfferEncodings.class, 0, Side.CLIENT);
+        CHANNEL.registerMessage(MessageAcceptEncodings.Handler.class, MessageAcceptEncodings.class, 1, Side.SERVER);
+        CHANNEL.registerMessage(MessageSectionDelta.Handler.class, MessageSectionDelta.class, 2, Side.CLIENT);
+        FMLCommonHandler.instance().bus().register(new NEIDNetwork());
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.player instanceof EntityPlayerMP) {
+            final EntityPlayerMP player = (EntityPlayerMP) event.player;
+            connectionCount(player).incrementAndGet();
+            final NetworkManager manager = player.playerNetServerHandler.netManager;
+            manager.channel().attr(ENCODING).set(ChunkEncoding.LEGACY);
+            if (!manager.isLocalChannel()) {
+                REMOTE_PLAYERS_BY_ENCODING.incrementAndGet(ChunkEncoding.LEGACY);
+            }
+            CHANNEL.sendTo(new MessageOfferEncodings(ChunkEncoding.enabled(), NEIDConfig.SectionCacheSize), player);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.player instanceof EntityPlayerMP) {
+            final EntityPlayerMP player = (EntityPlayerMP) event.player;
+            connectionCount(player).decrementAndGet();
+            final NetworkManager manager = player.playerNetServerHandler.netManager;
+            final Integer encoding = manager.channel().attr(ENCODING).getAndSet(null);
+            if (encoding != null && !manager.isLocalChannel()) {
+                REMOTE_PLAYERS_BY_ENCODING.decrementAndGet(encoding & ChunkEncoding.PAYLOAD);
+            }
+            final SectionCache sectionCache = manager.channel().attr(SECTION_CACHE).get();
+            if (sectionCache != null) {
+                sectionCache.logStats(player.getCommandSenderName());
+            }
+        }
+    }
+
+    private static AtomicInteger connectionCount(EntityPlayerMP player) {
+        return player.playerNetServerHandler.netManager.isLocalChannel() ? LOCAL_PLAYERS : REMOTE_PLAYERS;
+    }
+
+    /**
+     * @return Whether every logged in player uses a local channel, like the owner of a singleplayer world. Packets
+     *         are handed to local connections as objects, so they are never serialized and their payload never needs
+     *         to be compressed.
+     */
+    public static boolean localOnly() {
+        return LOCAL_PLAYERS.get() > 0 && REMOTE_PLAYERS.get() == 0;
+    }
+
+    /**
+     * @return Whether a logged in remote player uses this payload encoding. Payloads compressed ahead of serialization
+     *         with an encoding no connection uses would never be sent.
+     */
+    public static boolean hasRemotePlayers(int payloadEncoding) {
+        return REMOTE_PLAYERS_BY_ENCODING.get(payloadEncoding) > 0;
+    }
+
+    /**
+     * Ignored once the player logged out, whose connection was then removed from the counts.
+     */
+    public static void setEncoding(NetworkManager manager, int encoding) {
+        final Attribute<Integer> attribute = manager.channel().attr(ENCODING);
+        Integer previous;
+        do {
+            previous = attribute.get();
+            if (previous == null) {
+                return;
+            }
+        } while (!attribute.compareAndSet(previous, encoding));
+        if (!manager.isLocalChannel()) {
+            REMOTE_PLAYERS_BY_ENCODING.decrementAndGet(previous & ChunkEncoding.PAYLOAD);
+            REMOTE_PLAYERS_BY_ENCODING.incrementAndGet(encoding & ChunkEncoding.PAYLOAD);
+        }
+    }
+
+    /**
+     * Set before the encoding accepting {@link ChunkEncoding#SECTION_CACHE}, so that it exists once payloads are
+     * flagged with it.
+     */
+    public static void setSectionCache(NetworkManager manager, SectionCache sectionCache) {
+        manager.channel().attr(SECTION_CACHE).set(sectionCache);
+    }
+
+    public static int getEncoding(Channel channel) {
+        final Integer encoding = channel.attr(ENCODING).get();
+        return encoding == null ? ChunkEncoding.LEGACY : encoding;
+    }
+
+    public static int getEncoding(EntityPlayerMP player) {
+        return getEncoding(player.playerNetServerHandler.netManager.channel());
+    }
+
+    public static void beginWrite(Channel channel) {
+        WRITING.set(channel);
+    }
+
+    public static void endWrite() {
+        WRITING.remove();
+    }
+
+    /**
+     * @return The payload encoding accepted by the connection the current thread is serializing a packet for, or
+     *         {@link ChunkEncoding#LEGACY} when called outside of packet serialization.
+     */
+    public static int currentEncoding() {
+        final Channel channel = WRITING.get();
+        return channel == null ? ChunkEncoding.LEGACY : getEncoding(channel) & ChunkEncoding.PAYLOAD;
+    }
+
+    /**
+     * @return The section cache of the connection the current thread is serializing a packet for, or null
+     */
+    public static SectionCache currentSectionCache() {
+        final Channel channel = WRITING.get();
+        return channel == null || (getEncoding(channel) & ChunkEncoding.SECTION_CACHE) == 0 ? null
+                : channel.attr(SECTION_CACHE).get();
+    }
+}
@@ -0,0 +1,97 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import com.gtnewhorizons.neid.compression.CompressionBackends;
+
+/**
+ * Per-thread deflater that encodes payloads slice by slice while compressing them. Neither the encoded payload nor the
+ * growing output are allocated per packet, only the final compressed array is.
+ */
+final class PayloadDeflater {
+
+    private static final int SLICE_SIZE = 32768;
+
+    /**
+     * Output buffers grown past this size by a large bulk packet are not kept around.
+     */
+    private static final int RETAINED_OUTPUT_SIZE = 1 << 20;
+
+    private static final ThreadLocal<PayloadDeflater> LOCAL = ThreadLocal.withInitial(PayloadDeflater::new);
+
+    private final Deflater deflater = CompressionBackends.network().createDeflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] slice = new byte[SLICE_SIZE];
+
+    /**
+     * Largest {@link ChunkEncoding#UNIFORM_LIGHT} light of a chunk: the header and 32 planes.
+     */
+    private final byte[] light = new byte[5 + 16 * 2 * 2048];
+    private byte[] output = new byte[SLICE_SIZE * 2];
+    private int outputLength;
+
+    private PayloadDeflater() {}
+
+    static PayloadDeflater begin(int level) {
+        final PayloadDeflater payloadDeflater = LOCAL.get();
+        payloadDeflater.deflater.reset();
+        payloadDeflater.deflater.setLevel(level);
+        payloadDeflater.outputLength = 0;
+        return payloadDeflater;
+    }
+
+    /**
+     * Appends a legacy payload encoded with the given flags.
+     */
+    void write(byte[] data, int length, int sections, int encoding) {
+        final int lightStart = (encoding & ChunkEncoding.UNIFORM_LIGHT) != 0 && sections > 0
+                ? Math.min(length, ChunkEncoding.blockDataLength(sections))
+                : length;
+        if ((encoding & ChunkEncoding.BYTE_PLANES) == 0) {
+            deflater.setInput(data, 0, lightStart);
+            drain();
+        } else {
+            for (int pos = 0; pos < lightStart; pos += SLICE_SIZE) {
+                final int end = Math.min(lightStart, pos + SLICE_SIZE);
+                ChunkEncoding.encode(data, sections, encoding, pos, end, slice, 0);
+                deflater.setInput(slice, 0, end - pos);
+                drain();
+            }
+        }
+        if (lightStart < length) {
+            // Biomes of full chunks follow the light, 256 bytes after a multiple of 2048
+            final int biomes = (length - lightStart) % 2048;
+            final int lightLength = ChunkEncoding
+                    .encodeLight(data, lightStart, length - lightStart - biomes, sections, light, 0);
+            deflater.setInput(light, 0, lightLength);
+            drain();
+            deflater.setInput(data, length - biomes, biomes);
+            drain();
+        }
+    }
+
+    ChunkPayload finish(int encoding) {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflateIntoOutput();
+        }
+        final ChunkPayload payload = new ChunkPayload(encoding, Arrays.copyOf(output, outputLength), outputLength);
+        if (output.length > RETAINED_OUTPUT_SIZE) {
+            output = new byte[SLICE_SIZE * 2];
+        }
+        return payload;
+    }
+
+    private void drain() {
+        while (!deflater.needsInput()) {
+            deflateIntoOutput();
+        }
+    }
+
+    private void deflateIntoOutput() {
+        if (outputLength == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+    }
+}
@@ -0,0 +1,167 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.gtnewhorizons.neid.Constants;
+
+/**
+ * The server's copy of the section cache of one client, see {@link ChunkEncoding#SECTION_CACHE}.
+ *
+ * Both sides keep a least recently used cache of the same size, keyed by the hash of the 16-bit id and metadata
+ * arrays of a section, and update it in the same order: every section of a payload flagged with
+ * {@link ChunkEncoding#SECTION_CACHE} is looked up in payload order, and inserted when missing. The server only needs
+ * the hashes to know what the client holds, so a section the client already has is replaced by a marker holding its
+ * hash, and deflates to next to nothing. Payload sizes and layout stay the same.
+ */
+public final class SectionCache {
+
+    private static final Logger LOGGER = LogManager.getLogger("NEID");
+
+    /**
+     * Size of the id or the metadata array of a section in the legacy payload.
+     */
+    private static final int ARRAY_BYTES = Constants.BLOCKS_PER_EBS * 2;
+
+    /**
+     * A section replaced by a marker starts with this id, which is above {@link Constants#MAX_BLOCK_ID} and never
+     * sent for a real block, followed by the hash of the section.
+     */
+    private static final int MARKER = 0xFFFF;
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final Map<Long, Boolean> known;
+
+    private final AtomicLong sections = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public SectionCache(int capacity) {
+        this.known = new LinkedHashMap<Long, Boolean>(16, 0.75F, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return The hashes of the sections of a legacy payload, in payload order
+     */
+    public static long[] hashes(byte[] raw, int sections) {
+        final long[] hashes = new long[sections];
+        for (int i = 0; i < sections; i++) {
+            hashes[i] = hash(raw, i * ARRAY_BYTES, (sections + i) * ARRAY_BYTES);
+        }
+        return hashes;
+    }
+
+    /**
+     * Hashes the id and metadata arrays of a section. A leading {@link #MARKER} id is hashed as air, since it is sent
+     * as air to keep it from being taken for a marker.
+     */
+    public static long hash(byte[] data, int idOffset, int metaOffset) {
+        long h = PRIME_1;
+        for (int i = 0; i < ARRAY_BYTES; i += 8) {
+            long word = readLong(data, idOffset + i);
+            if (i == 0 && (word >>> 48) == MARKER) {
+                word &= 0x0000FFFFFFFFFFFFL;
+            }
+            h = Long.rotateLeft(h ^ word * PRIME_2, 31) * PRIME_1;
+        }
+        for (int i = 0; i < ARRAY_BYTES; i += 8) {
+            h = Long.rotateLeft(h ^ readLong(data, metaOffset + i) * PRIME_2, 31) * PRIME_1;
+        }
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        return h ^ h >>> 29;
+    }
+
+    private static long readLong(byte[] data, int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | data[pos + i] & 0xFF;
+        }
+        return value;
+    }
+
+    public static boolean isMarker(byte[] data, int idOffset) {
+        return ((data[idOffset] & 0xFF) << 8 | data[idOffset + 1] & 0xFF) == MARKER;
+    }
+
+    public static long markerHash(byte[] data, int idOffset) {
+        return readLong(data, idOffset + 2);
+    }
+
+    /**
+     * Looks up the sections of a payload being written, in payload order, and remembers the missing ones as sent.
+     *
+     * @return The index bits of the sections the client already has
+     */
+    int update(long[] hashes) {
+        int cached = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (this.known.get(hashes[i]) != null) {
+                cached |= 1 << i;
+            } else {
+                this.known.put(hashes[i], Boolean.TRUE);
+            }
+        }
+        this.sections.addAndGet(hashes.length);
+        this.hits.addAndGet(Integer.bitCount(cached));
+        return cached;
+    }
+
+    /**
+     * Updates the cache with a payload about to be written and replaces the sections the client has by markers.
+     *
+     * @return A copy of the payload, or null if it can be sent unchanged
+     */
+    public byte[] elide(byte[] raw, int sections, long[] hashes) {
+        final int cached = update(hashes);
+        byte[] out = null;
+        for (int i = 0; i < sections; i++) {
+            final int idOffset = i * ARRAY_BYTES;
+            if ((cached & (1 << i)) == 0 && !isMarker(raw, idOffset)) {
+                continue;
+            }
+            if (out == null) {
+                out = raw.clone();
+            }
+            if ((cached & (1 << i)) != 0) {
+                final int metaOffset = (sections + i) * ARRAY_BYTES;
+                Arrays.fill(out, idOffset, idOffset + ARRAY_BYTES, (byte) 0);
+                Arrays.fill(out, metaOffset, metaOffset + ARRAY_BYTES, (byte) 0);
+                out[idOffset] = (byte) (MARKER >> 8);
+                out[idOffset + 1] = (byte) MARKER;
+                for (int b = 0; b < 8; b++) {
+                    out[idOffset + 2 + b] = (byte) (hashes[i] >>> (56 - b * 8));
+                }
+            } else {
+                out[idOffset] = 0;
+                out[idOffset + 1] = 0;
+            }
+        }
+        return out;
+    }
+
+    public void logStats(String player) {
+        final long sent = this.sections.get();
+        final long cached = this.hits.get();
+        if (sent > 0) {
+            LOGGER.info(
+                    "Section cache of {}: {} of {} sections were cached, {} KB of block data not sent",
+                    player,
+                    cached,
+                    sent,
+                    cached * ARRAY_BYTES * 2 / 1024);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.gtnewhorizons.neid.network;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.gtnewhorizons.neid.Constants;
+import com.gtnewhorizons.neid.mixins.interfaces.IExtendedBlockStorageMixin;
+import com.gtnewhorizons.neid.network.message.MessageSectionDelta;
+
+/**
+ * Builds the payload of {@link MessageSectionDelta} from the blocks a PlayerInstance flagged for update.
+ *
+ * Layout: section count, then per section its y index, its run count and the runs. A run is 3 bytes holding the 12-bit
+ * index of its first block and its length minus one, then the 16-bit block id and metadata shared by the whole run.
+ * Indices are in section order, y << 8 | z << 4 | x, so neighbouring changed blocks of the same type share one run.
+ */
+public final class SectionDelta {
+
+    public static final int RUN_SIZE = 7;
+
+    /**
+     * Rough size of one deflated section in a S21PacketChunkData, used to decide whether a delta is worth sending.
+     */
+    private static final int ESTIMATED_SECTION_PACKET_SIZE = 2048;
+
+    /**
+     * Chunk coordinates and section count, plus the FML channel name and discriminator.
+     */
+    private static final int MESSAGE_OVERHEAD = 8 + 1 + 8;
+
+    private SectionDelta() {}
+
+    public static int estimateChunkPacketSize(int sectionMask) {
+        return 17 + Integer.bitCount(sectionMask & 0xFFFF) * ESTIMATED_SECTION_PACKET_SIZE;
+    }
+
+    public static int multiBlockChangePacketSize(int records) {
+        return 14 + records * 6;
+    }
+
+    public static int messageSize(MessageSectionDelta message) {
+        return MESSAGE_OVERHEAD + message.data.length;
+    }
+
+    /**
+     * @param dirty One 4096-bit set per section of the flagged positions, null for untouched sections
+     */
+    public static MessageSectionDelta build(Chunk chunk, long[][] dirty) {
+        final ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        int sections = 0;
+        int blocks = 0;
+        for (long[] bits : dirty) {
+            if (bits != null) {
+                int count = 0;
+                for (long word : bits) {
+                    count += Long.bitCount(word);
+                }
+                if (count > 0) {
+                    sections++;
+                    blocks += count;
+                }
+            }
+        }
+        final ByteBuffer out = ByteBuffer.allocate(1 + sections * 3 + blocks * RUN_SIZE);
+        out.put((byte) sections);
+        for (int sectionY = 0; sectionY < dirty.length; sectionY++) {
+            final long[] bits = dirty[sectionY];
+            if (bits == null || isEmpty(bits)) {
+                continue;
+            }
+            final ExtendedBlockStorage ebs = storage[sectionY];
+            final short[] ids = ebs == null ? null : ((IExtendedBlockStorageMixin) ebs).getBlock16BArray();
+            final short[] metas = ebs == null ? null : ((IExtendedBlockStorageMixin) ebs).getBlock16BMetaArray();
+            out.put((byte) sectionY);
+            final int runCountPos = out.position();
+            out.putShort((short) 0);
+            int runs = 0;
+            int start = -1;
+            int length = 0;
+            short id = 0;
+            short meta = 0;
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    final int index = word << 6 | Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    final short blockId = ids == null ? 0 : ids[index];
+                    final short blockMeta = metas == null ? 0 : metas[index];
+                    if (start >= 0 && index == start + length && blockId == id && blockMeta == meta) {
+                        length++;
+                        continue;
+                    }
+                    if (start >= 0) {
+                        putRun(out, start, length, id, meta);
+                        runs++;
+                    }
+                    start = index;
+                    length = 1;
+                    id = blockId;
+                    meta = blockMeta;
+                }
+            }
+            putRun(out, start, length, id, meta);
+            runs++;
+            out.putShort(runCountPos, (short) runs);
+        }
+        return new MessageSectionDelta(chunk.xPosition, chunk.zPosition, Arrays.copyOf(out.array(), out.position()));
+    }
+
+    private static void putRun(ByteBuffer out, int start, int length, short id, short meta) {
+        final int packed = start << 12 | (length - 1);
+        out.put((byte) (packed >>> 16));
+        out.putShort((short) packed);
+        out.putShort(id);
+        out.putShort(meta);
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks a block, in chunk-local coordinates, as changed.
+     *
+     * @return False if the block was already marked
+     */
+    public static boolean mark(long[][] dirty, int x, int y, int z) {
+        if (y < 0 || y >= dirty.length << 4) {
+            return true;
+        }
+        long[] bits = dirty[y >> 4];
+        if (bits == null) {
+            bits = dirty[y >> 4] = new long[Constants.BLOCKS_PER_EBS >> 6];
+        }
+        final int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        final long bit = 1L << index;
+        if ((bits[index >> 6] & bit) != 0) {
+            return false;
+        }
+        bits[index >> 6] |= bit;
+        return true;
+    }
+
+    public static int count(long[][] dirty) {
+        int count = 0;
+        for (long[] bits : dirty) {
+            if (bits != null) {
+                for (long word : bits) {
+                    count += Long.bitCount(word);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Every marked block in the x << 12 | z << 8 | y format of PlayerInstance and S22PacketMultiBlockChange
+     */
+    public static short[] locations(long[][] dirty, int count) {
+        final short[] locations = new short[count];
+        int i = 0;
+        for (int sectionY = 0; sectionY < dirty.length; sectionY++) {
+            final long[] bits = dirty[sectionY];
+            if (bits == null) {
+                continue;
+            }
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    final int index = word << 6 | Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    locations[i++] = (short) ((index & 15) << 12 | (index >> 4 & 15) << 8
+                            | sectionY << 4
+                            | index >> 8);
+                }
+            }
+        }
+        return locations;
+    }
+
+    public static void clear(long[][] dirty) {
+        for (long[] bits : dirty) {
+            if (bits != null) {
+                Arrays.fill(bits, 0L);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.gtnewhorizons.neid.network;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+
+/**
+ * Streams the chunks sent to one player nearest sections first. The map chunk bulk packet only carries the sections
+ * around the player's Y level, the remaining ones follow as partial S21PacketChunkData packets of a few sections each,
+ * nearest first, round-robin between the chunks. The client fills partial packets into the chunk it already has.
+ *
+ * With {@link NEIDConfig#SectionCulling}, only the sections the player can plausibly see follow: the ones around the
+ * heights the player recently was at or is heading to. The others stay pending until the player gets close to them.
+ */
+public final class SectionStreamer {
+
+    /**
+     * Ticks a vertical movement is extrapolated for when culling sections.
+     */
+    private static final int LOOKAHEAD_TICKS = 20;
+
+    /**
+     * Vertical blocks per tick above which a player is considered teleported, a bit above the terminal falling speed.
+     */
+    private static final double MAX_MOTION = 4;
+
+    /**
+     * Sections still to send by chunk, in the order they are sent in.
+     */
+    private final LinkedHashMap<Long, Integer> pending = new LinkedHashMap<>();
+
+    private WorldServer world;
+
+    /**
+     * Lowest and highest section the player was in since {@link #rangeStart}.
+     */
+    private int recentLow = -1;
+    private int recentHigh = -1;
+    private long rangeStart;
+    private double lastY;
+
+    /**
+     * The visible sections of the last pass over the pending ones, and whether a pending section may be visible since.
+     */
+    private int lastVisible;
+    private boolean mayHaveVisible;
+
+    /**
+     * @return The section the player is in, clamped to the world height
+     */
+    public static int playerSection(EntityPlayerMP player) {
+        return MathHelper.clamp_int(MathHelper.floor_double(player.posY) >> 4, 0, 15);
+    }
+
+    /**
+     * @return The sections sent along with the chunk itself when the player is in the given section
+     */
+    public static int initialMask(int playerSection) {
+        final int radius = NEIDConfig.SectionStreamingRadius;
+        final int low = Math.max(0, playerSection - radius);
+        final int high = Math.min(15, playerSection + radius);
+        return (0xFFFF >>> (15 - high + low)) << low;
+    }
+
+    /**
+     * @return The sections sent along with a new chunk to the player
+     */
+    public int initialMask(EntityPlayerMP player) {
+        int mask = NEIDConfig.SectionStreaming ? initialMask(playerSection(player)) : 0xFFFF;
+        if (NEIDConfig.SectionCulling) {
+            this.track(player);
+            mask &= this.visibleMask();
+        }
+        return mask;
+    }
+
+    /**
+     * Remembers the sections of the chunks sent with {@code sentMask} that still have to follow.
+     */
+    public void defer(WorldServer world, List<Chunk> chunks, int sentMask) {
+        if (world != this.world) {
+            this.pending.clear();
+            this.world = world;
+            this.recentLow = -1;
+        }
+        for (Chunk chunk : chunks) {
+            final Long key = ChunkCoordIntPair.chunkXZ2Int(chunk.xPosition, chunk.zPosition);
+            this.pending.remove(key);
+            final int remaining = presentSections(chunk) & ~sentMask;
+            if (remaining != 0) {
+                this.pending.put(key, remaining);
+            }
+        }
+        this.mayHaveVisible = true;
+    }
+
+    /**
+     * Updates the heights the player recently was at, and where the player is heading to.
+     */
+    private void track(EntityPlayerMP player) {
+        final long now = player.worldObj.getTotalWorldTime();
+        final int section = playerSection(player);
+        double motion = this.recentLow < 0 ? 0 : player.posY - this.lastY;
+        if (Math.abs(motion) > MAX_MOTION) {
+            // Teleported rather than moved
+            motion = 0;
+        }
+        this.lastY = player.posY;
+        final int heading = MathHelper
+                .clamp_int(MathHelper.floor_double(player.posY + motion * LOOKAHEAD_TICKS) >> 4, 0, 15);
+        if (this.recentLow < 0 || now - this.rangeStart > NEIDConfig.SectionCullingMemoryTicks) {
+            this.recentLow = section;
+            this.recentHigh = section;
+            this.rangeStart = now;
+        }
+        this.recentLow = Math.min(this.recentLow, Math.min(section, heading));
+        this.recentHigh = Math.max(this.recentHigh, Math.max(section, heading));
+    }
+
+    /**
+     * @return The sections the player can plausibly see, every section unless culling
+     */
+    private int visibleMask() {
+        if (!NEIDConfig.SectionCulling) {
+            return 0xFFFF;
+        }
+        final int radius = NEIDConfig.SectionCullingRadius;
+        final int low = Math.max(0, this.recentLow - radius);
+        final int high = Math.min(15, this.recentHigh + radius);
+        return (0xFFFF >>> (15 - high + low)) << low;
+    }
+
+    /**
+     * @return Whether a section of a chunk still has to be sent, so that its tile entities can't be sent yet
+     */
+    public boolean isDeferred(int chunkX, int sectionY, int chunkZ) {
+        final Integer mask = this.pending.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        return mask != null && (mask & (1 << sectionY)) != 0;
+    }
+
+    /**
+     * Sends the next sections of up to {@link NEIDConfig#SectionStreamingPacketsPerTick} chunks.
+     */
+    public void sendPending(EntityPlayerMP player) {
+        if (NEIDConfig.SectionCulling) {
+            this.track(player);
+        }
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        final WorldServer world = player.getServerForPlayer();
+        if (world != this.world) {
+            this.pending.clear();
+            return;
+        }
+        final int visible = this.visibleMask();
+        if (visible != this.lastVisible) {
+            this.lastVisible = visible;
+            this.mayHaveVisible = true;
+        }
+        if (!this.mayHaveVisible) {
+            // Every pending section is out of sight
+            return;
+        }
+        final int center = playerSection(player);
+        final List<Map.Entry<Long, Integer>> requeue = new ArrayList<>();
+        final Iterator<Map.Entry<Long, Integer>> iterator = this.pending.entrySet().iterator();
+        int sent = 0;
+        while (sent < NEIDConfig.SectionStreamingPacketsPerTick && iterator.hasNext()) {
+            final Map.Entry<Long, Integer> entry = iterator.next();
+            final int chunkX = (int) entry.getKey().longValue();
+            final int chunkZ = (int) (entry.getKey() >>> 32);
+            // Also false while the chunk is still queued to be sent in full
+            if (!world.getPlayerManager().isPlayerWatchingChunk(player, chunkX, chunkZ)) {
+                iterator.remove();
+                continue;
+            }
+            if ((entry.getValue() & visible) == 0) {
+                // Stays pending, in place, until the player gets close
+                continue;
+            }
+            iterator.remove();
+            final Chunk chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+            final int mask = entry.getValue() & presentSections(chunk);
+            final int next = nearestSections(mask & visible, center, NEIDConfig.SectionStreamingSectionsPerPacket);
+            if (next != 0) {
+                player.playerNetServerHandler.sendPacket(new S21PacketChunkData(chunk, false, next));
+                sendTileEntities(player, chunk, next);
+                sent++;
+            }
+            if ((mask & ~next) != 0) {
+                entry.setValue(mask & ~next);
+                requeue.add(entry);
+            }
+        }
+        boolean visibleLeft = iterator.hasNext();
+        for (Map.Entry<Long, Integer> entry : requeue) {
+            this.pending.put(entry.getKey(), entry.getValue());
+            visibleLeft |= (entry.getValue() & visible) != 0;
+        }
+        this.mayHaveVisible = visibleLeft;
+    }
+
+    private static int presentSections(Chunk chunk) {
+        final ExtendedBlockStorage[] storageArrays = chunk.getBlockStorageArray();
+        int mask = 0;
+        for (int sectionY = 0; sectionY < storageArrays.length; sectionY++) {
+            if (storageArrays[sectionY] != null && !storageArrays[sectionY].isEmpty()) {
+                mask |= 1 << sectionY;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return Up to {@code count} sections of {@code mask}, picked by distance to {@code center}
+     */
+    static int nearestSections(int mask, int center, int count) {
+        int picked = 0;
+        for (int distance = 0; distance < 16 && count > 0; distance++) {
+            for (int sectionY : new int[] { center - distance, center + distance }) {
+                final int bit = sectionY >= 0 && sectionY < 16 ? 1 << sectionY : 0;
+                if ((mask & bit) != 0 && (picked & bit) == 0 && count > 0) {
+                    picked |= bit;
+                    count--;
+                }
+            }
+        }
+        return picked;
+    }
+
+    private static void sendTileEntities(EntityPlayerMP player, Chunk chunk, int sectionMask) {
+        for (Object value : chunk.chunkTileEntityMap.values()) {
+            final TileEntity tileEntity = (TileEntity) value;
+            if ((sectionMask & (1 << (tileEntity.yCoord >> 4))) != 0) {
+                final Packet packet = tileEntity.getDescriptionPacket();
+                if (packet != null) {
+                    player.playerNetServerHandler.sendPacket(packet);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.gtnewhorizons.neid.network.message;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.NEIDNetwork;
+import com.gtnewhorizons.neid.network.SectionCache;
+
+import cpw.mods.fml.common.network.simpleimpl.IMessage;
+import cpw.mods.fml.common.network.simpleimpl.IMessageHandler;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The client's answer to {@link MessageOfferEncodings}, holding the offered encodings it is able to decode.
+ */
+public class MessageAcceptEncodings implements IMessage {
+
+    private int encoding;
+
+    /**
+     * Size of the client's {@link SectionCache}, if {@link ChunkEncoding#SECTION_CACHE} is accepted.
+     */
+    private int sectionCacheSize;
+
+    public MessageAcceptEncodings() {}
+
+    public MessageAcceptEncodings(int encoding, int sectionCacheSize) {
+        this.encoding = encoding;
+        this.sectionCacheSize = sectionCacheSize;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.encoding = buf.readInt();
+        this.sectionCacheSize = buf.readInt();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeInt(this.encoding);
+        buf.writeInt(this.sectionCacheSize);
+    }
+
+    public static class Handler implements IMessageHandler<MessageAcceptEncodings, IMessage> {
+
+        @Override
+        public IMessage onMessage(MessageAcceptEncodings message, MessageContext ctx) {
+            final int encoding = message.encoding & ChunkEncoding.enabled();
+            if ((encoding & ChunkEncoding.SECTION_CACHE) != 0) {
+                NEIDNetwork.setSectionCache(
+                        ctx.getServerHandler().netManager,
+                        new SectionCache(Math.min(message.sectionCacheSize, NEIDConfig.SectionCacheSize)));
+            }
+            NEIDNetwork.setEncoding(ctx.getServerHandler().netManager, encoding);
+            return null;
+        }
+    }
+}
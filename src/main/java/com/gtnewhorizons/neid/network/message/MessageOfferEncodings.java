@@ -0,0 +1,60 @@
+package com.gtnewhorizons.neid.network.message;
+
+import com.gtnewhorizons.neid.NEIDConfig;
+import com.gtnewhorizons.neid.client.ClientSectionCache;
+import com.gtnewhorizons.neid.network.ChunkEncoding;
+import com.gtnewhorizons.neid.network.SectionCache;
+
+import cpw.mods.fml.common.network.simpleimpl.IMessage;
+import cpw.mods.fml.common.network.simpleimpl.IMessageHandler;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sent by the server on login with the chunk encodings it is willing to use.
+ */
+public class MessageOfferEncodings implements IMessage {
+
+    private int encoding;
+
+    /**
+     * Largest {@link SectionCache} the server keeps for a client.
+     */
+    private int sectionCacheSize;
+
+    public MessageOfferEncodings() {}
+
+    public MessageOfferEncodings(int encoding, int sectionCacheSize) {
+        this.encoding = encoding;
+        this.sectionCacheSize = sectionCacheSize;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.encoding = buf.readInt();
+        this.sectionCacheSize = buf.readInt();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeInt(this.encoding);
+        buf.writeInt(this.sectionCacheSize);
+    }
+
+    public static class Handler implements IMessageHandler<MessageOfferEncodings, MessageAcceptEncodings> {
+
+        @Override
+        public MessageAcceptEncodings onMessage(MessageOfferEncodings message, MessageContext ctx) {
+            int accepted = message.encoding & ChunkEncoding.SUPPORTED & ChunkEncoding.enabled();
+            final int sectionCacheSize = (accepted & ChunkEncoding.SECTION_CACHE) != 0
+                    ? Math.min(message.sectionCacheSize, NEIDConfig.SectionCacheSize)
+                    : 0;
+            if (sectionCacheSize <= 0) {
+                accepted &= ~ChunkEncoding.SECTION_CACHE;
+            }
+            // Before answering, the server only flags payloads with SECTION_CACHE once it has the answer
+            ClientSectionCache.reset(sectionCacheSize);
+            return new MessageAcceptEncodings(accepted, sectionCacheSize);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.gtnewhorizons.neid.network.message;
+
+import java.nio.ByteBuffer;
+
+import net.minecraft.block.Block;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.WorldClient;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.gtnewhorizons.neid.client.ClientBlockUpdates;
+
+import cpw.mods.fml.common.network.simpleimpl.IMessage;
+import cpw.mods.fml.common.network.simpleimpl.IMessageHandler;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Changed blocks of one chunk, sent instead of S22PacketMultiBlockChange or S21PacketChunkData when smaller. See
+ * {@link com.gtnewhorizons.neid.network.SectionDelta} for the layout of {@link #data}.
+ */
+public class MessageSectionDelta implements IMessage {
+
+    private int chunkX;
+    private int chunkZ;
+    public byte[] data;
+
+    public MessageSectionDelta() {}
+
+    public MessageSectionDelta(int chunkX, int chunkZ, byte[] data) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.data = data;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.chunkX = buf.readInt();
+        this.chunkZ = buf.readInt();
+        this.data = new byte[buf.readableBytes()];
+        buf.readBytes(this.data);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeInt(this.chunkX);
+        buf.writeInt(this.chunkZ);
+        buf.writeBytes(this.data);
+    }
+
+    public static class Handler implements IMessageHandler<MessageSectionDelta, IMessage> {
+
+        @Override
+        public IMessage onMessage(MessageSectionDelta message, MessageContext ctx) {
+            final WorldClient world = Minecraft.getMinecraft().theWorld;
+            if (world != null && world.getChunkProvider().chunkExists(message.chunkX, message.chunkZ)) {
+                apply(world, world.getChunkFromChunkCoords(message.chunkX, message.chunkZ), message.data);
+            }
+            return null;
+        }
+
+        private static void apply(WorldClient world, Chunk chunk, byte[] data) {
+            final ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+            final ByteBuffer in = ByteBuffer.wrap(data);
+            final int sections = in.get() & 0xFF;
+            int sectionMask = 0;
+            for (int section = 0; section < sections; section++) {
+                final int sectionY = in.get() & 15;
+                final int runs = in.getShort() & 0xFFFF;
+                for (int run = 0; run < runs; run++) {
+                    final int packed = (in.get() & 0xFF) << 16 | (in.getShort() & 0xFFFF);
+                    final int start = packed >>> 12;
+                    final int end = start + (packed & 0xFFF) + 1;
+                    final Block block = Block.getBlockById(in.getShort() & 0xFFFF);
+                    final int meta = in.getShort() & 0xFFFF;
+                    for (int index = start; index < end; index++) {
+                        ClientBlockUpdates.apply(
+                                world,
+                                chunk,
+                                storage,
+                                index & 15,
+                                sectionY << 4 | index >> 8,
+                                index >> 4 & 15,
+                                block,
+                                meta);
+                    }
+                }
+                sectionMask |= 1 << sectionY;
+            }
+            ClientBlockUpdates.markSections(world, chunk, sectionMask);
+        }
+    }
+}